@@ -0,0 +1,90 @@
+#!/usr/bin/env bash
+# Time to first response and resident memory of the application variants (Linux, needs curl).
+#
+#   ./gradlew bootJar cdsArchive          # and ./gradlew nativeCompile -Pnative on a GraalVM JDK
+#   docker-compose up -d db               # "jar" starts as deployed today, with the database and a refresh
+#   scripts/measure-startup.sh [jar] [jar-fast] [cds] [native]
+#
+# Every variant is started RUNS times. Reported are the medians of the time from launch until
+# POST /api/phone/country first answers, and of the RSS right after that answer.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+PORT=${PORT:-8088}
+RUNS=${RUNS:-5}
+JAR_PROFILES=${JAR_PROFILES:-local}
+URL="http://localhost:$PORT/api/phone/country"
+BODY='{"phoneNumber": "+7 495 123 45 67"}'
+LOG=build/startup.log
+
+BOOT_JAR=$(ls build/libs/phone-country-app-*.jar 2>/dev/null | grep -v -- '-plain' | head -n 1 || true)
+
+variant_command() {
+  case "$1" in
+    jar) echo "java -jar $BOOT_JAR --spring.profiles.active=$JAR_PROFILES" ;;
+    jar-fast) echo "java -jar $BOOT_JAR --spring.profiles.active=fast-start" ;;
+    cds) echo "java -XX:SharedArchiveFile=build/cds/app.jsa -jar build/cds/app.jar --spring.profiles.active=fast-start" ;;
+    native) echo "build/native/nativeCompile/phone-country-app --spring.profiles.active=fast-start" ;;
+    *) echo "Unknown variant $1, expected jar, jar-fast, cds or native" >&2; exit 2 ;;
+  esac
+}
+
+variant_available() {
+  case "$1" in
+    jar | jar-fast) [[ -n "$BOOT_JAR" ]] ;;
+    cds) [[ -f build/cds/app.jsa ]] ;;
+    native) [[ -x build/native/nativeCompile/phone-country-app ]] ;;
+  esac
+}
+
+now_ms() {
+  date +%s%3N
+}
+
+# Prints "<milliseconds to first response> <RSS in KiB>" for one start
+measure_once() {
+  local start pid elapsed rss
+  start=$(now_ms)
+  # shellcheck disable=SC2086 # the command is split into words on purpose
+  $1 --server.port="$PORT" >"$LOG" 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null -H 'Content-Type: application/json' -d "$BODY" "$URL"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "The application exited before answering, see $LOG" >&2
+      return 1
+    fi
+    sleep 0.02
+  done
+  elapsed=$(( $(now_ms) - start ))
+  rss=$(ps -o rss= -p "$pid" | tr -d ' ')
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  echo "$elapsed $rss"
+}
+
+median() {
+  sort -n | awk '{ v[NR] = $1 } END { print v[int((NR + 1) / 2)] }'
+}
+
+variants=("$@")
+if [[ ${#variants[@]} -eq 0 ]]; then
+  variants=(jar jar-fast cds native)
+fi
+
+mkdir -p build
+printf '%-10s %12s %10s\n' variant first_ms rss_mib
+for variant in "${variants[@]}"; do
+  command=$(variant_command "$variant")
+  if ! variant_available "$variant"; then
+    printf '%-10s %s\n' "$variant" "not built, skipped"
+    continue
+  fi
+  results=()
+  for ((run = 1; run <= RUNS; run++)); do
+    results+=("$(measure_once "$command")")
+  done
+  ms=$(printf '%s\n' "${results[@]}" | cut -d' ' -f1 | median)
+  rss=$(printf '%s\n' "${results[@]}" | cut -d' ' -f2 | median)
+  printf '%-10s %12s %10s\n' "$variant" "$ms" "$((rss / 1024))"
+done
@@ -0,0 +1,64 @@
+package ru.dsec.phonecountry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds benchmark inputs from the checked-in copy of the Wikipedia page.
+ */
+final class CountryCodeFixture {
+
+    static final String PAGE = "/wikipedia/List_of_telephone_country_codes.html";
+    static final String NUMBERING_PLAN = "/numbering-plan.tsv";
+
+    private CountryCodeFixture() {
+    }
+
+    /**
+     * @return The index exactly as a refresh would publish it from the fixture page,
+     * with the bundled numbering plan overlaid.
+     */
+    static CountryCodeIndex loadIndex() throws IOException {
+        Map<String, List<String>> plan;
+        try (InputStream in = CountryCodeFixture.class.getResourceAsStream(NUMBERING_PLAN)) {
+            if (in == null) {
+                throw new IOException("Numbering plan not found on the classpath: " + NUMBERING_PLAN);
+            }
+            plan = NumberingPlan.read(in);
+        }
+        return NumberingPlan.overlay(loadCountryCodes(), plan);
+    }
+
+    /**
+     * @return The index built from the fixture page alone.
+     */
+    static CountryCodeIndex loadCountryCodes() throws IOException {
+        Map<String, List<String>> codeToCountries;
+        try (InputStream page = CountryCodeFixture.class.getResourceAsStream(PAGE)) {
+            if (page == null) {
+                throw new IOException("Fixture not found on the classpath: " + PAGE);
+            }
+            codeToCountries = WikipediaCountryCodeParser.parse(page.readAllBytes());
+        }
+        CountryCodeIndex.Builder builder = CountryCodeIndex.builder(codeToCountries.size());
+        codeToCountries.forEach((code, countries) -> builder.add(code.substring(1), countries));
+        return builder.build();
+    }
+
+    /**
+     * @return A service backed by the fixture index, with no database or network behind it.
+     * Metrics are recorded as in production, so their cost shows up in the results.
+     */
+    static PhoneCountryService newService() throws IOException {
+        PhoneCountryService service = new PhoneCountryService(null, null, null,
+                new PhoneCountryMetrics(new SimpleMeterRegistry(), new PhoneCountryConfig()),
+                new LookupEventLog(new PhoneCountryConfig()));
+        service.publishIndex(loadIndex());
+        return service;
+    }
+}
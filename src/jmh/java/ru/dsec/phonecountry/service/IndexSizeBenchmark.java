@@ -0,0 +1,87 @@
+package ru.dsec.phonecountry.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Longest-prefix walk over the fixture table grown with random national prefixes (4 to 7 digits),
+ * from country codes only up to tens of thousands of prefixes. The walk cost should stay flat;
+ * the estimated index size is printed for each table size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class IndexSizeBenchmark {
+
+    private static final int NUMBERS = 1024;
+
+    @Param({"0", "1000", "10000", "50000"})
+    public int extraPrefixes;
+
+    private CountryCodeIndex index;
+    private final long[] numbers = new long[NUMBERS];
+
+    @Setup
+    public void setUp() throws IOException {
+        SplittableRandom random = new SplittableRandom(42);
+        CountryCodeIndex base = CountryCodeFixture.loadIndex();
+        CountryCodeIndex.Builder builder = CountryCodeIndex.builder(base.size() + extraPrefixes).addAll(base);
+        for (int i = 0; i < extraPrefixes; i++) {
+            String prefix = base.prefix(random.nextInt(base.size())) + digits(random, 4 + random.nextInt(4));
+            builder.add(prefix.substring(0, Math.min(prefix.length(), 7)), List.of("Synthetic"));
+        }
+        index = builder.build();
+        for (int i = 0; i < NUMBERS; i++) {
+            numbers[i] = PhoneNumberNormalizer.pack(base.prefix(random.nextInt(base.size())) + digits(random, 9));
+        }
+        System.out.printf("%n%d codes, %d trie nodes, ~%d KiB%n",
+                index.size(), index.nodeCount(), index.estimatedBytes() / 1024);
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            position = 0;
+        }
+
+        int next() {
+            return position++ & (NUMBERS - 1);
+        }
+    }
+
+    @Benchmark
+    public int match(Cursor cursor) {
+        return index.match(numbers[cursor.next()]);
+    }
+
+    private static String digits(SplittableRandom random, int count) {
+        StringBuilder digits = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            digits.append((char) ('0' + random.nextInt(10)));
+        }
+        return digits.toString();
+    }
+}
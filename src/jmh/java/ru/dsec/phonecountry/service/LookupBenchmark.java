@@ -0,0 +1,115 @@
+package ru.dsec.phonecountry.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import ru.dsec.phonecountry.exception.CountryNotFoundException;
+import ru.dsec.phonecountry.exception.InvalidPhoneNumberException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalize + lookup hot path over the fixture code table.
+ * Thread count is set by the subclasses, so every scenario is reported both uncontended and under contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class LookupBenchmark {
+
+    static final String[] VALID = {
+            "+7 (495) 123-45-67", "+44 20 7946 0958", "+49 30 901820", "+81 3-1234-5678",
+            "+55 11 91234-5678", "+33 1 23 45 67 89", "+86 10 1234 5678", "+91 98765 43210"};
+    static final String[] INVALID = {
+            "abc-xyz", "+123", "+1234567890123456", "7+1234567890", "+7 495 123 45 67 ext 8"};
+    static final String[] UNKNOWN_PREFIX = {
+            "+999 123 4567", "+800 1234 5678", "+384 123 4567", "0123456789", "+289 123 4567"};
+    // Shared codes where the longest prefix decides: +1 vs +1xxx, +7 vs +76/+77/+7840, +599 sub-codes
+    static final String[] AMBIGUOUS_PREFIX = {
+            "+1 242 322 2931", "+1 212 555 0100", "+1 876 555 0100", "+7 712 222 7231",
+            "+7 495 123 4567", "+7 840 123 4567", "+599 7 123 4567", "+599 9 123 4567"};
+
+    PhoneCountryService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = CountryCodeFixture.newService();
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int position;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            position = 0;
+        }
+
+        String next(String[] numbers) {
+            if (position >= numbers.length) {
+                position = 0;
+            }
+            return numbers[position++];
+        }
+    }
+
+    @Benchmark
+    public String cleanValid(Cursor cursor) {
+        return service.cleanPhoneNumber(cursor.next(VALID));
+    }
+
+    @Benchmark
+    public long normalizeValid(Cursor cursor) {
+        return PhoneNumberNormalizer.pack(cursor.next(VALID));
+    }
+
+    @Benchmark
+    public String lookupValid(Cursor cursor) {
+        return service.determineCountry(cursor.next(VALID));
+    }
+
+    @Benchmark
+    public Object lookupInvalid(Cursor cursor) {
+        try {
+            return service.determineCountry(cursor.next(INVALID));
+        } catch (InvalidPhoneNumberException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public Object lookupUnknownPrefix(Cursor cursor) {
+        try {
+            return service.determineCountry(cursor.next(UNKNOWN_PREFIX));
+        } catch (CountryNotFoundException e) {
+            return e;
+        }
+    }
+
+    @Benchmark
+    public String lookupAmbiguousPrefix(Cursor cursor) {
+        return service.determineCountry(cursor.next(AMBIGUOUS_PREFIX));
+    }
+
+    @Benchmark
+    public LookupResult resultInvalid(Cursor cursor) {
+        return service.lookup(cursor.next(INVALID));
+    }
+
+    @Benchmark
+    public LookupResult resultUnknownPrefix(Cursor cursor) {
+        return service.lookup(cursor.next(UNKNOWN_PREFIX));
+    }
+}
@@ -0,0 +1,10 @@
+package ru.dsec.phonecountry.service;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+@State(Scope.Benchmark)
+@Threads(Threads.MAX)
+public class MultiThreadLookupBenchmark extends LookupBenchmark {
+}
@@ -0,0 +1,57 @@
+package ru.dsec.phonecountry.service;
+
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time of the fixture page: full Jsoup document versus the scanner that reads only the code table.
+ * Run with the GC profiler (the default in build.gradle); gc.alloc.rate.norm is the heap each parse needs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    private byte[] page;
+
+    @Setup
+    public void setUp() throws IOException {
+        try (InputStream in = ParserBenchmark.class.getResourceAsStream(CountryCodeFixture.PAGE)) {
+            if (in == null) {
+                throw new IOException("Fixture not found on the classpath: " + CountryCodeFixture.PAGE);
+            }
+            page = in.readAllBytes();
+        }
+    }
+
+    @Benchmark
+    public Map<String, List<String>> dom() {
+        return WikipediaDomParser.parse(Jsoup.parse(new String(page, StandardCharsets.UTF_8)));
+    }
+
+    @Benchmark
+    public Map<String, List<String>> streaming() {
+        return WikipediaCountryCodeParser.parse(page);
+    }
+}
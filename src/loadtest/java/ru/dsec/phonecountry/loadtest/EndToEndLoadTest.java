@@ -0,0 +1,391 @@
+package ru.dsec.phonecountry.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * End-to-end load test of the whole serving path. Starts the application in its own JVM on an in-memory
+ * H2 database, with the country codes page served by a local {@link WikipediaStub}, so the startup
+ * refresh and every later one really fetch, parse and persist. Once it is ready, drives a mix of single
+ * lookups and batches while refreshes are requested through the admin API, and stores a JSON baseline:
+ * throughput, latency percentiles of both kinds of request, the allocation rate of the application and
+ * the refresh outcomes.
+ * <p>
+ * The allocation rate is the increase of {@code jvm.gc.memory.allocated} over the measurement, which the
+ * JVM only updates at garbage collections; the longer the run, the closer it gets.
+ * <p>
+ * Configured with system properties, see the {@code e2eLoadTest} task in build.gradle.
+ */
+public final class EndToEndLoadTest {
+
+    private static final Pattern ALLOCATED =
+            Pattern.compile("(?m)^jvm_gc_memory_allocated_bytes_total(?:\\{[^}]*})? (\\S+)$");
+    private static final Pattern REFRESHES =
+            Pattern.compile("(?m)^phone_refresh_seconds_count\\{[^}]*outcome=\"(\\w+)\"[^}]*} (\\S+)$");
+    /**
+     * Admin API key the application is started with; the admin API only answers requests carrying it.
+     */
+    private static final String ADMIN_API_KEY = "e2e-load-test";
+
+    private EndToEndLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String label = System.getProperty("loadtest.label", "e2e");
+        int port = Integer.getInteger("loadtest.port", 18088);
+        int concurrency = Integer.getInteger("loadtest.concurrency", 32);
+        double batchShare = Double.parseDouble(System.getProperty("loadtest.batchShare", "0.1"));
+        int batchSize = Integer.getInteger("loadtest.batchSize", 100);
+        Duration refreshEvery = Duration.parse(System.getProperty("loadtest.refreshEvery", "PT5S"));
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        Duration startupTimeout = Duration.parse(System.getProperty("loadtest.startupTimeout", "PT2M"));
+        Duration stubLatency = Duration.parse(System.getProperty("loadtest.stubLatency", "PT0.2S"));
+        double stubFailureRate = Double.parseDouble(System.getProperty("loadtest.stubFailureRate", "0.1"));
+        Path page = Path.of(System.getProperty("loadtest.page"));
+        Path reports = Path.of(System.getProperty("loadtest.reports", "build/reports/loadtest"));
+        String baseUrl = "http://localhost:" + port;
+
+        Files.createDirectories(reports);
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        try (WikipediaStub stub = new WikipediaStub(Files.readAllBytes(page), stubLatency, stubFailureRate, true)) {
+            Process app = startApplication(port, stub.url(), reports);
+            Runtime.getRuntime().addShutdownHook(new Thread(app::destroy));
+            try {
+                awaitReady(client, baseUrl, app, startupTimeout);
+                run(client, baseUrl, label, concurrency, batchShare, batchSize, refreshEvery, warmup, duration,
+                        stub, stubLatency, stubFailureRate, reports);
+            } finally {
+                app.destroy();
+                app.waitFor(30, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private static void run(HttpClient client, String baseUrl, String label, int concurrency, double batchShare,
+                            int batchSize, Duration refreshEvery, Duration warmup, Duration duration,
+                            WikipediaStub stub, Duration stubLatency, double stubFailureRate, Path reports)
+            throws Exception {
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        ServerCpu cpu = new ServerCpu(baseUrl, measureFrom, measureUntil);
+        cpu.start();
+        Refresher refresher = new Refresher(client, URI.create(baseUrl + "/api/admin/reload"), refreshEvery,
+                measureUntil);
+        refresher.start();
+
+        System.out.printf("%s: %d workers against %s, %.0f%% batches of %d, refresh every %s, stub %s latency"
+                        + " and %.0f%% failures, warm-up %s, measuring %s%n",
+                label, concurrency, baseUrl, batchShare * 100, batchSize, refreshEvery, stubLatency,
+                stubFailureRate * 100, warmup, duration);
+        // Every n-th request of a worker is a batch, the rest are single lookups
+        int batchEvery = batchShare > 0 ? Math.max(1, (int) Math.round(1 / batchShare)) : Integer.MAX_VALUE;
+        List<Worker> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(client, baseUrl, i, batchEvery, batchSize, measureFrom, measureUntil, errors);
+            worker.start();
+            workers.add(worker);
+        }
+
+        Thread.sleep(Math.max(0, (measureFrom - System.nanoTime()) / 1_000_000));
+        double allocatedBefore = scrape(client, baseUrl, ALLOCATED);
+        for (Worker worker : workers) {
+            worker.join();
+        }
+        double allocatedAfter = scrape(client, baseUrl, ALLOCATED);
+        refresher.join();
+        String refreshOutcomes = refreshOutcomes(client, baseUrl);
+
+        long singles = 0;
+        long batches = 0;
+        for (Worker worker : workers) {
+            singles += worker.singles.count;
+            batches += worker.batches.count;
+        }
+        long[] singleLatencies = Latencies.merge(workers.stream().map(w -> w.singles).toList());
+        long[] batchLatencies = Latencies.merge(workers.stream().map(w -> w.batches).toList());
+        double seconds = duration.toNanos() / 1e9;
+        double rps = (singles + batches) / seconds;
+        long lookups = singles + batches * batchSize;
+        double allocatedPerSecond = (allocatedAfter - allocatedBefore) / seconds;
+
+        String report = String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"concurrency\":%d,\"requests\":%d,\"batches\":%d,\"batchSize\":%d,"
+                        + "\"errors\":%d,\"rps\":%.1f,\"lookupsPerSecond\":%.1f,"
+                        + "\"p50Micros\":%d,\"p90Micros\":%d,\"p99Micros\":%d,\"p999Micros\":%d,\"maxMicros\":%d,"
+                        + "\"batchP50Micros\":%d,\"batchP99Micros\":%d,\"batchMaxMicros\":%d,"
+                        + "\"allocatedBytesPerSecond\":%.0f,\"allocatedBytesPerLookup\":%.0f,"
+                        + "\"refreshesRequested\":%d,\"refreshesAccepted\":%d,\"refreshOutcomes\":%s,"
+                        + "\"stubPages\":%d,\"stubFailures\":%d,\"stubLatencyMillis\":%d%s}",
+                label, workers.size(), singles + batches, batches, batchSize, errors.sum(), rps, lookups / seconds,
+                LoadTest.percentile(singleLatencies, 0.50), LoadTest.percentile(singleLatencies, 0.90),
+                LoadTest.percentile(singleLatencies, 0.99), LoadTest.percentile(singleLatencies, 0.999),
+                Latencies.max(singleLatencies),
+                LoadTest.percentile(batchLatencies, 0.50), LoadTest.percentile(batchLatencies, 0.99),
+                Latencies.max(batchLatencies),
+                allocatedPerSecond, lookups == 0 ? 0 : (allocatedAfter - allocatedBefore) / lookups,
+                refresher.requested, refresher.accepted, refreshOutcomes,
+                stub.served(), stub.failed(), stubLatency.toMillis(),
+                ServerCpu.reportFields(cpu.cores(), rps));
+        Files.writeString(reports.resolve(label + ".json"), report + System.lineSeparator());
+        System.out.printf("%nlookups/s %.1f, allocated %.1f MB/s (%.0f bytes per lookup), refreshes %s%n",
+                lookups / seconds, allocatedPerSecond / (1 << 20),
+                lookups == 0 ? 0 : (allocatedAfter - allocatedBefore) / lookups, refreshOutcomes);
+        LoadTest.printComparison(reports);
+    }
+
+    private static Process startApplication(int port, String pageUrl, Path reports) throws IOException {
+        Path workDir = Files.createDirectories(reports.resolve("e2e-app"));
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(System.getProperty("loadtest.app.jvmArgs", "-Xmx512m").split("\\s+")));
+        command.addAll(List.of(
+                "-cp", System.getProperty("loadtest.app.classpath"),
+                "ru.dsec.phonecountry.PhoneCountryAppApplication",
+                // No profile file matches, so the local profile and its PostgreSQL settings stay off
+                "--spring.profiles.active=e2e",
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:mem:e2e;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--phone.country.api-url=" + pageUrl,
+                "--phone.country.admin-api-key=" + ADMIN_API_KEY,
+                "--phone.country.admin-enabled=true",
+                "--phone.country.snapshot-file=" + workDir.resolve("country-codes.snapshot"),
+                "--management.endpoints.web.exposure.include=health,prometheus"));
+        File log = workDir.resolve("application.log").toFile();
+        System.out.printf("Starting the application on port %d, log in %s%n", port, log);
+        return new ProcessBuilder(command)
+                .directory(workDir.toFile())
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+    }
+
+    private static void awaitReady(HttpClient client, String baseUrl, Process app, Duration timeout)
+            throws IOException, InterruptedException {
+        HttpRequest readiness = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/health/readiness")).build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!app.isAlive()) {
+                throw new IllegalStateException("The application exited with " + app.exitValue() + ", see its log");
+            }
+            try {
+                if (client.send(readiness, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("The application was not ready within " + timeout);
+    }
+
+    private static double scrape(HttpClient client, String baseUrl, Pattern metric)
+            throws IOException, InterruptedException {
+        Matcher matcher = metric.matcher(prometheus(client, baseUrl));
+        double sum = 0;
+        while (matcher.find()) {
+            sum += Double.parseDouble(matcher.group(1));
+        }
+        return sum;
+    }
+
+    /**
+     * @return The completed refreshes by outcome as a JSON object, e.g. {"updated":5,"failed":1}.
+     */
+    private static String refreshOutcomes(HttpClient client, String baseUrl) throws IOException, InterruptedException {
+        Matcher matcher = REFRESHES.matcher(prometheus(client, baseUrl));
+        StringBuilder json = new StringBuilder("{");
+        while (matcher.find()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            json.append('"').append(matcher.group(1)).append("\":").append((long) Double.parseDouble(matcher.group(2)));
+        }
+        return json.append('}').toString();
+    }
+
+    private static String prometheus(HttpClient client, String baseUrl) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/prometheus")).build(),
+                HttpResponse.BodyHandlers.ofString()).body();
+    }
+
+    /**
+     * Latencies in nanoseconds of one kind of request, recorded by one worker.
+     */
+    private static final class Latencies {
+
+        private long[] values = new long[1 << 14];
+        private int count;
+
+        void add(long nanos) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = nanos;
+        }
+
+        static long[] merge(List<Latencies> all) {
+            long[] merged = new long[all.stream().mapToInt(l -> l.count).sum()];
+            int position = 0;
+            for (Latencies latencies : all) {
+                System.arraycopy(latencies.values, 0, merged, position, latencies.count);
+                position += latencies.count;
+            }
+            Arrays.sort(merged);
+            return merged;
+        }
+
+        static long max(long[] sorted) {
+            return sorted.length == 0 ? 0 : sorted[sorted.length - 1] / 1000;
+        }
+    }
+
+    private static final class Worker extends Thread {
+
+        private final HttpClient client;
+        private final URI single;
+        private final URI batch;
+        private final int batchEvery;
+        private final int batchSize;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LongAdder errors;
+        private final Latencies singles = new Latencies();
+        private final Latencies batches = new Latencies();
+        private int next;
+
+        Worker(HttpClient client, String baseUrl, int id, int batchEvery, int batchSize, long measureFrom,
+               long measureUntil, LongAdder errors) {
+            super("loadtest-e2e-" + id);
+            this.client = client;
+            this.single = URI.create(baseUrl + "/api/phone/country");
+            this.batch = URI.create(baseUrl + "/api/phone/countries");
+            this.batchEvery = batchEvery;
+            this.batchSize = batchSize;
+            this.next = id;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            long now;
+            int request = 0;
+            while ((now = System.nanoTime()) < measureUntil) {
+                boolean isBatch = ++request % batchEvery == 0;
+                boolean ok;
+                try {
+                    ok = isBatch ? sendBatch() : sendSingle();
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (now < measureFrom) {
+                    continue;
+                }
+                if (!ok) {
+                    errors.increment();
+                }
+                (isBatch ? batches : singles).add(System.nanoTime() - now);
+            }
+        }
+
+        private boolean sendSingle() throws IOException, InterruptedException {
+            String number = LoadTest.NUMBERS[next++ % LoadTest.NUMBERS.length];
+            HttpRequest request = HttpRequest.newBuilder(single)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString("{\"phoneNumber\":\"" + number + "\"}"))
+                    .build();
+            int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status == 200 || status == 400 || status == 404;
+        }
+
+        private boolean sendBatch() throws IOException, InterruptedException {
+            StringBuilder body = new StringBuilder(batchSize * 24);
+            for (int i = 0; i < batchSize; i++) {
+                body.append('"').append(LoadTest.NUMBERS[next++ % LoadTest.NUMBERS.length]).append("\"\n");
+            }
+            HttpRequest request = HttpRequest.newBuilder(batch)
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                    .build();
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            // One answer line per number, whatever the outcome of each
+            return response.statusCode() == 200 && response.body().lines().count() == batchSize;
+        }
+    }
+
+    /**
+     * Requests a refresh at a fixed rate until the end of the measurement; one still running is answered 409.
+     */
+    private static final class Refresher extends Thread {
+
+        private final HttpClient client;
+        private final URI uri;
+        private final Duration every;
+        private final long until;
+        private int requested;
+        private int accepted;
+
+        Refresher(HttpClient client, URI uri, Duration every, long until) {
+            super("loadtest-refresh");
+            setDaemon(true);
+            this.client = client;
+            this.uri = uri;
+            this.every = every;
+            this.until = until;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Thread.sleep(every.toMillis());
+                    if (System.nanoTime() >= until) {
+                        return;
+                    }
+                    requested++;
+                    HttpRequest reload = HttpRequest.newBuilder(uri)
+                            .header("X-API-Key", ADMIN_API_KEY)
+                            .POST(HttpRequest.BodyPublishers.noBody())
+                            .build();
+                    int status = client.send(reload, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    if (status == 202) {
+                        accepted++;
+                    }
+                }
+            } catch (IOException e) {
+                System.err.printf("Refresh request failed: %s%n", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ru.dsec.phonecountry.loadtest;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test of the line lookup listener, reported next to the {@link LoadTest} runs of the HTTP endpoint.
+ * Every connection sends a batch of numbers, reads all of their answers and sends the next batch, so
+ * the pipeline depth is how many lookups are in flight per connection. The latencies reported are those
+ * of whole batches.
+ * <p>
+ * Configured with system properties, see the {@code lineLoadTest} task in build.gradle.
+ */
+public final class LineLoadTest {
+
+    private LineLoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = System.getProperty("loadtest.host", "localhost");
+        int port = Integer.getInteger("loadtest.port", 8089);
+        // Only used to read the CPU of the instance
+        String baseUrl = System.getProperty("loadtest.url", "http://localhost:8088");
+        String label = System.getProperty("loadtest.label", "line");
+        int connections = Integer.getInteger("loadtest.connections", 8);
+        int depth = Integer.getInteger("loadtest.depth", 64);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        Path reports = Path.of(System.getProperty("loadtest.reports", "build/reports/loadtest"));
+
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        ServerCpu cpu = new ServerCpu(baseUrl, measureFrom, measureUntil);
+        cpu.start();
+
+        System.out.printf("%s: %d connections of %d in flight against %s:%d, warm-up %s, measuring %s%n",
+                label, connections, depth, host, port, warmup, duration);
+        List<Worker> workers = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            Worker worker = new Worker(host, port, depth, i, measureFrom, measureUntil, errors);
+            worker.start();
+            workers.add(worker);
+        }
+        long batches = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            batches += worker.count;
+        }
+
+        long[] latencies = new long[(int) batches];
+        int position = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, position, worker.count);
+            position += worker.count;
+        }
+        Arrays.sort(latencies);
+
+        long total = batches * depth;
+        double rps = total / (duration.toNanos() / 1e9);
+        String report = String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"concurrency\":%d,\"depth\":%d,\"requests\":%d,\"errors\":%d,\"rps\":%.1f,"
+                        + "\"p50Micros\":%d,\"p90Micros\":%d,\"p99Micros\":%d,\"p999Micros\":%d,\"maxMicros\":%d%s}",
+                label, connections, depth, total, errors.sum(), rps,
+                LoadTest.percentile(latencies, 0.50), LoadTest.percentile(latencies, 0.90),
+                LoadTest.percentile(latencies, 0.99), LoadTest.percentile(latencies, 0.999),
+                latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000,
+                ServerCpu.reportFields(cpu.cores(), rps));
+        Files.createDirectories(reports);
+        Files.writeString(reports.resolve(label + ".json"), report + System.lineSeparator());
+        LoadTest.printComparison(reports);
+    }
+
+    private static final class Worker extends Thread {
+
+        private final String host;
+        private final int port;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LongAdder errors;
+        private final byte[] batch;
+        private final int depth;
+        private final byte[] answers = new byte[64 * 1024];
+        private long[] latencies = new long[1 << 14];
+        private int count;
+
+        Worker(String host, int port, int depth, int id, long measureFrom, long measureUntil, LongAdder errors) {
+            super("loadtest-line-" + id);
+            this.host = host;
+            this.port = port;
+            this.depth = depth;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+            // The same mix as over HTTP, each connection starting at a different number
+            StringBuilder lines = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                lines.append(LoadTest.NUMBERS[(id + i) % LoadTest.NUMBERS.length]).append('\n');
+            }
+            this.batch = lines.toString().getBytes(StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public void run() {
+            try (Socket socket = new Socket(host, port)) {
+                socket.setTcpNoDelay(true);
+                OutputStream out = socket.getOutputStream();
+                InputStream in = socket.getInputStream();
+                long now;
+                while ((now = System.nanoTime()) < measureUntil) {
+                    out.write(batch);
+                    out.flush();
+                    int pending = depth;
+                    while (pending > 0) {
+                        int read = in.read(answers);
+                        if (read < 0) {
+                            throw new IOException("Connection closed with " + pending + " answers pending");
+                        }
+                        for (int i = 0; i < read; i++) {
+                            if (answers[i] == '\n') {
+                                pending--;
+                            }
+                        }
+                    }
+                    if (now < measureFrom) {
+                        continue;
+                    }
+                    if (count == latencies.length) {
+                        latencies = Arrays.copyOf(latencies, count * 2);
+                    }
+                    latencies[count++] = System.nanoTime() - now;
+                }
+            } catch (IOException e) {
+                System.err.printf("%s: %s%n", getName(), e.getMessage());
+                errors.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package ru.dsec.phonecountry.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Closed-loop load test of {@code POST /api/phone/country}: every worker sends its next request
+ * as soon as the previous one is answered. Latencies are recorded after the warm-up, reported as
+ * percentiles and stored per label, so runs against different serving modes can be compared.
+ * <p>
+ * Throughput is also reported per core the instance kept busy, see {@link ServerCpu}.
+ * <p>
+ * Configured with system properties, see the {@code loadTest} task in build.gradle.
+ */
+public final class LoadTest {
+
+    // Roughly the production mix: mostly known numbers, a fifth of misses and some garbage
+    static final String[] NUMBERS = {
+            "+7 (495) 123-45-67", "+44 20 7946 0958", "+49 30 901820", "+1 212 555 0100",
+            "+1 242 322 2931", "+7 712 222 7231", "+33 1 23 45 67 89", "+86 10 1234 5678",
+            "+91 98765 43210", "+55 11 91234-5678", "+81 3-1234-5678", "+599 7 123 4567",
+            "+7 840 123 4567", "+61 2 9876 5432",
+            "+999 123 4567", "+800 1234 5678", "0123456789",
+            "abc-xyz", "+123"};
+
+    private static final Pattern FIELD = Pattern.compile("\"(\\w+)\":\"?([^,\"}]*)\"?");
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = System.getProperty("loadtest.url", "http://localhost:8088");
+        URI uri = URI.create(baseUrl + "/api/phone/country");
+        String label = System.getProperty("loadtest.label", "default");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 64);
+        Duration warmup = Duration.parse(System.getProperty("loadtest.warmup", "PT10S"));
+        Duration duration = Duration.parse(System.getProperty("loadtest.duration", "PT30S"));
+        Path reports = Path.of(System.getProperty("loadtest.reports", "build/reports/loadtest"));
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        long measureFrom = System.nanoTime() + warmup.toNanos();
+        long measureUntil = measureFrom + duration.toNanos();
+        LongAdder errors = new LongAdder();
+        ServerCpu cpu = new ServerCpu(baseUrl, measureFrom, measureUntil);
+        cpu.start();
+
+        System.out.printf("%s: %d workers against %s, warm-up %s, measuring %s%n",
+                label, concurrency, uri, warmup, duration);
+        List<Worker> workers = new ArrayList<>(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            Worker worker = new Worker(client, uri, i, measureFrom, measureUntil, errors);
+            worker.start();
+            workers.add(worker);
+        }
+        long total = 0;
+        for (Worker worker : workers) {
+            worker.join();
+            total += worker.count;
+        }
+
+        long[] latencies = new long[(int) total];
+        int position = 0;
+        for (Worker worker : workers) {
+            System.arraycopy(worker.latencies, 0, latencies, position, worker.count);
+            position += worker.count;
+        }
+        Arrays.sort(latencies);
+
+        double rps = total / (duration.toNanos() / 1e9);
+        String report = String.format(Locale.ROOT,
+                "{\"label\":\"%s\",\"concurrency\":%d,\"requests\":%d,\"errors\":%d,\"rps\":%.1f,"
+                        + "\"p50Micros\":%d,\"p90Micros\":%d,\"p99Micros\":%d,\"p999Micros\":%d,\"maxMicros\":%d%s}",
+                label, concurrency, total, errors.sum(), rps,
+                percentile(latencies, 0.50), percentile(latencies, 0.90), percentile(latencies, 0.99),
+                percentile(latencies, 0.999), latencies.length == 0 ? 0 : latencies[latencies.length - 1] / 1000,
+                ServerCpu.reportFields(cpu.cores(), rps));
+        Files.createDirectories(reports);
+        Files.writeString(reports.resolve(label + ".json"), report + System.lineSeparator());
+        printComparison(reports);
+    }
+
+    static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1000;
+    }
+
+    /**
+     * Prints every stored run, HTTP and line protocol alike, one per row.
+     */
+    static void printComparison(Path reports) throws IOException {
+        System.out.printf("%n%-16s %12s %8s %10s %10s %10s %10s %9s %12s%n",
+                "label", "rps", "errors", "p50 us", "p90 us", "p99 us", "p99.9 us", "cores", "rps/core");
+        try (Stream<Path> files = Files.list(reports)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".json")).sorted().toList()) {
+                Matcher fields = FIELD.matcher(Files.readString(file));
+                Map<String, String> values = new HashMap<>();
+                while (fields.find()) {
+                    values.put(fields.group(1), fields.group(2));
+                }
+                System.out.printf("%-16s %12s %8s %10s %10s %10s %10s %9s %12s%n",
+                        values.get("label"), values.get("rps"), values.get("errors"), values.get("p50Micros"),
+                        values.get("p90Micros"), values.get("p99Micros"), values.get("p999Micros"),
+                        values.getOrDefault("cpuCores", "-"), values.getOrDefault("rpsPerCore", "-"));
+            }
+        }
+    }
+
+    private static final class Worker extends Thread {
+
+        private final HttpClient client;
+        private final URI uri;
+        private final long measureFrom;
+        private final long measureUntil;
+        private final LongAdder errors;
+        private int next;
+        private long[] latencies = new long[1 << 14];
+        private int count;
+
+        Worker(HttpClient client, URI uri, int id, long measureFrom, long measureUntil, LongAdder errors) {
+            super("loadtest-" + id);
+            this.client = client;
+            this.uri = uri;
+            this.next = id;
+            this.measureFrom = measureFrom;
+            this.measureUntil = measureUntil;
+            this.errors = errors;
+        }
+
+        @Override
+        public void run() {
+            long now;
+            while ((now = System.nanoTime()) < measureUntil) {
+                String number = NUMBERS[next++ % NUMBERS.length];
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString("{\"phoneNumber\":\"" + number + "\"}"))
+                        .build();
+                boolean ok;
+                try {
+                    int status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+                    ok = status == 200 || status == 400 || status == 404;
+                } catch (IOException e) {
+                    ok = false;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (now < measureFrom) {
+                    continue;
+                }
+                if (!ok) {
+                    errors.increment();
+                }
+                if (count == latencies.length) {
+                    latencies = Arrays.copyOf(latencies, count * 2);
+                }
+                latencies[count++] = System.nanoTime() - now;
+            }
+        }
+    }
+}
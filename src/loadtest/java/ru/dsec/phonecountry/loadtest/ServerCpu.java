@@ -0,0 +1,90 @@
+package ru.dsec.phonecountry.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * CPU used by the instance under test, sampled once a second from its Prometheus endpoint while the
+ * load runs, so throughput can be reported per core busy rather than per machine. Reports nothing if
+ * the endpoint cannot be read, e.g. with actuator disabled.
+ */
+final class ServerCpu extends Thread {
+
+    private static final Pattern PROCESS_CPU = Pattern.compile("(?m)^process_cpu_usage(?:\\{[^}]*})? (\\S+)$");
+    private static final Pattern CPU_COUNT = Pattern.compile("(?m)^system_cpu_count(?:\\{[^}]*})? (\\S+)$");
+
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    private final URI uri;
+    private final long measureFrom;
+    private final long measureUntil;
+    private double coresSum;
+    private int samples;
+
+    ServerCpu(String baseUrl, long measureFrom, long measureUntil) {
+        super("loadtest-cpu");
+        setDaemon(true);
+        this.uri = URI.create(baseUrl + "/actuator/prometheus");
+        this.measureFrom = measureFrom;
+        this.measureUntil = measureUntil;
+    }
+
+    @Override
+    public void run() {
+        try {
+            // Both gauges are recent averages, so the first sample waits a second into the measurement
+            long next = measureFrom + 1_000_000_000L;
+            while (next <= measureUntil) {
+                Thread.sleep(Math.max(0, (next - System.nanoTime()) / 1_000_000));
+                sample();
+                next += 1_000_000_000L;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void sample() throws InterruptedException {
+        String body;
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(2)).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return;
+            }
+            body = response.body();
+        } catch (IOException e) {
+            return;
+        }
+        Matcher usage = PROCESS_CPU.matcher(body);
+        Matcher count = CPU_COUNT.matcher(body);
+        if (usage.find() && count.find()) {
+            coresSum += Double.parseDouble(usage.group(1)) * Double.parseDouble(count.group(1));
+            samples++;
+        }
+    }
+
+    /**
+     * @return Average number of cores busy in the instance during the measurement, or NaN if never sampled.
+     */
+    double cores() throws InterruptedException {
+        join();
+        return samples == 0 ? Double.NaN : coresSum / samples;
+    }
+
+    /**
+     * @return The report fields for the measured CPU, none if it could not be measured.
+     */
+    static String reportFields(double cores, double rps) {
+        if (Double.isNaN(cores) || cores <= 0) {
+            return "";
+        }
+        return String.format(Locale.ROOT, ",\"cpuCores\":%.2f,\"rpsPerCore\":%.1f", cores, rps / cores);
+    }
+}
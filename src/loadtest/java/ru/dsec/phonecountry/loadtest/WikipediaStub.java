@@ -0,0 +1,91 @@
+package ru.dsec.phonecountry.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Stand-in for Wikipedia: serves a saved copy of the country codes page on localhost, after a configurable
+ * delay and with a configurable share of 503 answers. Sends no validators, and with {@code vary} set marks
+ * every copy with its own revision comment, so that each refresh goes through parsing and persisting
+ * rather than stopping at "not modified" or "unchanged".
+ */
+final class WikipediaStub implements AutoCloseable {
+
+    static final String PATH = "/wiki/List_of_telephone_country_codes";
+
+    private final HttpServer server;
+    private final byte[] page;
+    private final long latencyMillis;
+    private final double failureRate;
+    private final boolean vary;
+    private final AtomicLong served = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    WikipediaStub(byte[] page, Duration latency, double failureRate, boolean vary) throws IOException {
+        this.page = page;
+        this.latencyMillis = latency.toMillis();
+        this.failureRate = failureRate;
+        this.vary = vary;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext(PATH, this::handle);
+        this.server.setExecutor(Executors.newCachedThreadPool(task -> {
+            Thread thread = new Thread(task, "wikipedia-stub");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        this.server.start();
+    }
+
+    /**
+     * @return The URL of the page, to be used as phone.country.api-url.
+     */
+    String url() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + PATH;
+    }
+
+    long served() {
+        return served.get();
+    }
+
+    long failed() {
+        return failed.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < failureRate) {
+                failed.incrementAndGet();
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            long revision = served.incrementAndGet();
+            byte[] suffix = vary ? ("\n<!-- revision " + revision + " -->\n").getBytes(StandardCharsets.US_ASCII)
+                    : new byte[0];
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.sendResponseHeaders(200, page.length + suffix.length);
+            OutputStream body = exchange.getResponseBody();
+            body.write(page);
+            body.write(suffix);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
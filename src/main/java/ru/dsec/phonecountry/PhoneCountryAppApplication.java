@@ -2,12 +2,19 @@ package ru.dsec.phonecountry;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.dsec.phonecountry.enrich.EnrichRunner;
 
 @SpringBootApplication
 public class PhoneCountryAppApplication {
 
 	public static void main(String[] args) {
-		SpringApplication.run(PhoneCountryAppApplication.class, args);
+		ConfigurableApplicationContext context = SpringApplication.run(PhoneCountryAppApplication.class, args);
+		if (context.getBeanProvider(EnrichRunner.class).getIfAvailable() != null) {
+			// A batch run is done once the runners return; scheduled refreshes and the audit writer
+			// would otherwise keep the JVM running
+			System.exit(SpringApplication.exit(context));
+		}
 	}
 
 }
@@ -0,0 +1,113 @@
+package ru.dsec.phonecountry.admission;
+
+import io.micrometer.core.instrument.Counter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Admission control for the lookup API ({@code /api/phone}), ahead of any request parsing:
+ * <ul>
+ *     <li>a request over the quota of its API key gets 429 with Retry-After set to when the quota
+ *     starts over, see {@link ApiKeyQuotas};</li>
+ *     <li>a request over the concurrency limit gets 503 with the configured Retry-After, see {@link AimdLimit}.</li>
+ * </ul>
+ * Both answers are written from constant bytes, so shedding load costs next to nothing. Single lookups
+ * feed their latency to the limit; batches only hold a slot while they stream.
+ */
+@Component
+@ConditionalOnProperty(name = "phone.country.admission.enabled", havingValue = "true")
+public class AdmissionFilter extends OncePerRequestFilter {
+
+    static final String API_KEY_HEADER = "X-API-Key";
+    private static final String PATH = "/api/phone/";
+    private static final String BATCH_PATH = "/api/phone/countries";
+    private static final byte[] OVER_QUOTA =
+            "{\"message\":\"API key quota exceeded\"}".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OVERLOADED =
+            "{\"message\":\"Too many concurrent requests\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final AimdLimit limit;
+    private final ApiKeyQuotas quotas;
+    private final String concurrencyRetryAfter;
+    private final Counter quotaRejected;
+    private final Counter concurrencyRejected;
+
+    public AdmissionFilter(PhoneCountryConfig config, PhoneCountryMetrics metrics) {
+        PhoneCountryConfig.Admission admission = config.getAdmission();
+        this.limit = new AimdLimit(admission.getInitialLimit(), admission.getMinLimit(), admission.getMaxLimit(),
+                admission.getLatencyThreshold().toNanos(), admission.getBackoffRatio());
+        Map<String, Integer> keyQuotas = new LinkedHashMap<>();
+        if (config.getApiKey() != null && !config.getApiKey().isBlank()) {
+            keyQuotas.put(config.getApiKey(), admission.getQuota());
+        }
+        keyQuotas.putAll(admission.getQuotas());
+        this.quotas = new ApiKeyQuotas(keyQuotas, admission.getAnonymousQuota(), admission.getQuotaPeriod().toNanos(),
+                admission.getQuotaStripes(), System.nanoTime());
+        this.concurrencyRetryAfter = Long.toString(Math.max(1, admission.getRetryAfter().toSeconds()));
+        this.quotaRejected = metrics.admissionRejected("quota");
+        this.concurrencyRejected = metrics.admissionRejected("concurrency");
+        metrics.gaugeAdmission(limit, AimdLimit::limit, AimdLimit::inFlight);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !path(request).startsWith(PATH);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        long retryAfterNanos = quotas.tryAcquire(request.getHeader(API_KEY_HEADER), start);
+        if (retryAfterNanos != ApiKeyQuotas.ADMITTED) {
+            quotaRejected.increment();
+            // Rounded up, so that a client waiting as told finds the quota renewed
+            long seconds = (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1);
+            reject(response, HttpStatus.TOO_MANY_REQUESTS, Long.toString(seconds), OVER_QUOTA);
+            return;
+        }
+        if (!limit.tryAcquire()) {
+            concurrencyRejected.increment();
+            reject(response, HttpStatus.SERVICE_UNAVAILABLE, concurrencyRetryAfter, OVERLOADED);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            limit.release(System.nanoTime() - start, !path(request).equals(BATCH_PATH));
+        }
+    }
+
+    AimdLimit limit() {
+        return limit;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static void reject(HttpServletResponse response, HttpStatus status, String retryAfter, byte[] body)
+            throws IOException {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, retryAfter);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+}
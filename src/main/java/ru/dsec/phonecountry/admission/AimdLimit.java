@@ -0,0 +1,88 @@
+package ru.dsec.phonecountry.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrency limit adjusted by additive increase, multiplicative decrease. While requests complete
+ * under the latency threshold and the limit is actually in use, it grows by about one per limit's
+ * worth of requests; a slower request cuts it by the backoff ratio. Requests over the limit are
+ * rejected at once instead of queueing behind it. Lock-free: the in-flight count and the limit are
+ * each a single atomic.
+ */
+public final class AimdLimit {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long thresholdNanos;
+    private final double backoffRatio;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Bits of the current limit as a double, so fractional increases add up
+    private final AtomicLong limit;
+
+    public AimdLimit(int initialLimit, int minLimit, int maxLimit, long thresholdNanos, double backoffRatio) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limits: min " + minLimit + ", max " + maxLimit);
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("Backoff ratio must be between 0 and 1: " + backoffRatio);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.thresholdNanos = thresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = new AtomicLong(Double.doubleToLongBits(Math.max(minLimit, Math.min(maxLimit, initialLimit))));
+    }
+
+    /**
+     * @return {@code true} if the request may proceed, and must then be followed by {@link #release(long, boolean)}.
+     */
+    public boolean tryAcquire() {
+        int current = inFlight.incrementAndGet();
+        if (current > limit()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @param latencyNanos How long the admitted request took.
+     * @param sample       Whether that latency says anything about load; long-running requests such as
+     *                     batches only give their slot back.
+     */
+    public void release(long latencyNanos, boolean sample) {
+        int current = inFlight.getAndDecrement();
+        if (!sample) {
+            return;
+        }
+        long bits;
+        double next;
+        do {
+            bits = limit.get();
+            double value = Double.longBitsToDouble(bits);
+            if (latencyNanos > thresholdNanos) {
+                next = Math.max(minLimit, value * backoffRatio);
+            } else if (current * 2 >= value) {
+                next = Math.min(maxLimit, value + 1 / value);
+            } else {
+                // Mostly idle: the latency says nothing about what a higher limit would do
+                return;
+            }
+        } while (next != Double.longBitsToDouble(bits) && !limit.compareAndSet(bits, Double.doubleToLongBits(next)));
+    }
+
+    /**
+     * @return The number of concurrent requests currently allowed.
+     */
+    public int limit() {
+        return (int) Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * @return The number of admitted requests not yet released.
+     */
+    public int inFlight() {
+        return inFlight.get();
+    }
+}
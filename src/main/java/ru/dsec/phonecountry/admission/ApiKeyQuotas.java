@@ -0,0 +1,110 @@
+package ru.dsec.phonecountry.admission;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Requests allowed per API key in fixed windows of one quota period. Only keys known from the
+ * configuration get a quota of their own; every other request, with or without a key, shares the
+ * anonymous one, so unknown keys cannot grow the state.
+ * <p>
+ * Each quota is split across striped counters, one cache line apart, and a thread starts with the
+ * stripe its id picks: concurrent requests of one client rarely touch the same counter, and still
+ * never exceed the quota together, since an exhausted stripe sends the thread on to the next.
+ */
+public final class ApiKeyQuotas {
+
+    /**
+     * Returned by {@link #tryAcquire(String, long)} when the request is within its quota.
+     */
+    public static final long ADMITTED = 0;
+
+    private final Map<String, Quota> byKey;
+    private final Quota anonymous;
+
+    /**
+     * @param quotas    Requests per period by known API key; 0 means unlimited.
+     * @param anonymous Requests per period shared by all others; 0 means unlimited.
+     */
+    public ApiKeyQuotas(Map<String, Integer> quotas, int anonymous, long periodNanos, int stripes, long originNanos) {
+        if (periodNanos <= 0) {
+            throw new IllegalArgumentException("Quota period must be positive");
+        }
+        Map<String, Quota> byKey = new HashMap<>();
+        quotas.forEach((key, limit) -> byKey.put(key, Quota.of(limit, periodNanos, stripes, originNanos)));
+        this.byKey = Map.copyOf(byKey);
+        this.anonymous = Quota.of(anonymous, periodNanos, stripes, originNanos);
+    }
+
+    /**
+     * @param apiKey   The X-API-Key header, or {@code null}.
+     * @param nowNanos The current {@link System#nanoTime()}.
+     * @return {@link #ADMITTED}, or the nanoseconds until the quota of the key starts over.
+     */
+    public long tryAcquire(String apiKey, long nowNanos) {
+        Quota quota = apiKey != null ? byKey.getOrDefault(apiKey, anonymous) : anonymous;
+        return quota.tryAcquire(nowNanos);
+    }
+
+    private static final class Quota {
+
+        // Longs between stripes: one 64-byte cache line each
+        private static final int PADDING = 8;
+        // No stripes at all
+        private static final Quota UNLIMITED = new Quota(0, 1, 0, 0);
+
+        private final long periodNanos;
+        private final long originNanos;
+        private final int mask;
+        private final int[] shares;
+        // Per stripe: the window number in the high half, requests admitted in it in the low half
+        private final AtomicLongArray stripes;
+
+        private Quota(int limit, long periodNanos, int stripeCount, long originNanos) {
+            this.periodNanos = periodNanos;
+            this.originNanos = originNanos;
+            this.mask = stripeCount - 1;
+            this.shares = new int[stripeCount];
+            for (int i = 0; i < stripeCount; i++) {
+                shares[i] = limit / stripeCount + (i < limit % stripeCount ? 1 : 0);
+            }
+            this.stripes = new AtomicLongArray(stripeCount * PADDING);
+        }
+
+        static Quota of(int limit, long periodNanos, int stripes, long originNanos) {
+            if (limit <= 0) {
+                return UNLIMITED;
+            }
+            // A power of two not above the limit, so that every stripe has a share
+            int count = Integer.highestOneBit(Math.max(1, Math.min(stripes, limit)));
+            return new Quota(limit, periodNanos, count, originNanos);
+        }
+
+        long tryAcquire(long nowNanos) {
+            if (mask < 0) {
+                return ADMITTED;
+            }
+            long elapsed = nowNanos - originNanos;
+            int window = (int) (elapsed / periodNanos);
+            int home = (int) Thread.currentThread().getId();
+            for (int probe = 0; probe <= mask; probe++) {
+                int index = ((home + probe) & mask) * PADDING;
+                int share = shares[(home + probe) & mask];
+                long state;
+                int admitted;
+                do {
+                    state = stripes.get(index);
+                    admitted = (int) (state >>> 32) == window ? (int) state : 0;
+                    if (admitted >= share) {
+                        break;
+                    }
+                } while (!stripes.compareAndSet(index, state, ((long) window << 32) | (admitted + 1)));
+                if (admitted < share) {
+                    return ADMITTED;
+                }
+            }
+            return Math.max(1, (window + 1) * periodNanos - elapsed);
+        }
+    }
+}
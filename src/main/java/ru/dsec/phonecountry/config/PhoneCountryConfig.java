@@ -2,15 +2,212 @@ package ru.dsec.phonecountry.config;
 
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import lombok.Getter;
 import lombok.Setter;
 
 @Configuration
+@ImportRuntimeHints(PhoneCountryRuntimeHints.class)
 @ConfigurationProperties(prefix = "phone.country")
 @Getter
 @Setter
 public class PhoneCountryConfig {
     private String apiUrl;
+    /**
+     * Key of the main client, sent in the X-API-Key header; gets the admission quota of its own.
+     */
     private String apiKey;
+    /**
+     * Key for /api/admin, sent in the X-API-Key header; kept apart from the client keys, which only
+     * grant lookups. With no key set the admin endpoints reject every request.
+     */
+    private String adminApiKey;
     private int timeout;
-}
\ No newline at end of file
+    /**
+     * Binary snapshot to start with when there is no snapshot file and the database is empty.
+     * Generated at build time from the saved Wikipedia page.
+     */
+    private Resource snapshot = new ClassPathResource("country-codes.snapshot");
+    /**
+     * Where to keep the snapshot of the last successful refresh; disabled if not set.
+     */
+    private Path snapshotFile;
+    /**
+     * Prefixes below the country calling code (area codes, national ranges) overlaid on the code table;
+     * see {@link ru.dsec.phonecountry.service.NumberingPlan} for the format. Ignored if it does not exist.
+     */
+    private Resource numberingPlan = new ClassPathResource("numbering-plan.tsv");
+    /**
+     * Maximum number of distinct country codes tagged in lookup metrics; the rest are counted as "other".
+     */
+    private int metricsPrefixTagLimit = 1000;
+    /**
+     * Delay between periodic refreshes from Wikipedia.
+     */
+    private Duration refreshInterval = Duration.ofHours(24);
+    /**
+     * How often the country code table version is checked, to pick up a refresh made by another instance.
+     */
+    private Duration syncInterval = Duration.ofSeconds(30);
+    /**
+     * How long the instance refreshing from Wikipedia keeps the other instances from doing the same;
+     * ends earlier when the refresh does, and lets another instance take over if this one dies mid-refresh.
+     */
+    private Duration refreshLease = Duration.ofMinutes(5);
+    /**
+     * How often lookup totals are summarized in the log.
+     */
+    private Duration logSummaryInterval = Duration.ofMinutes(1);
+    /**
+     * Failing numbers included in each lookup summary; masked after their first characters unless
+     * audit-enabled is set.
+     */
+    private int logSampleSize = 10;
+    /**
+     * Writes every lookup with its raw number to the "phone.audit" logger, off the request thread.
+     */
+    private boolean auditEnabled;
+    /**
+     * Lookups waiting to be written to the audit log; further ones are dropped and counted.
+     */
+    private int auditBufferSize = 8192;
+    /**
+     * How the lookup endpoints are served: "controller" (annotated MVC controller) or "router" (functional routes).
+     */
+    private String serving = "controller";
+    /**
+     * Cache-Control of found and not-found lookup responses; they are also tagged with the data version.
+     */
+    private String cacheControl = "public, max-age=3600";
+    /**
+     * Exposes /api/admin: on-demand refresh, refresh status and index statistics, to requests carrying admin-api-key.
+     */
+    private boolean adminEnabled;
+    /**
+     * Lookups run at startup, before the application reports ready, to get the lookup path compiled; 0 disables.
+     */
+    private int warmupIterations = 20_000;
+    /**
+     * Starts from the snapshots alone: no database read at startup and no refresh once ready.
+     * The scheduled refresh still runs.
+     */
+    private boolean offlineStartup;
+    /**
+     * File enrichment run by the "enrich" profile instead of serving HTTP.
+     */
+    private final Enrich enrich = new Enrich();
+    /**
+     * TCP listener answering newline-delimited numbers, for internal clients; off by default.
+     */
+    private final Line line = new Line();
+    /**
+     * Load shedding for /api/phone: an adaptive concurrency limit and per API key quotas; off by default.
+     */
+    private final Admission admission = new Admission();
+
+    @Getter
+    @Setter
+    public static class Enrich {
+        /**
+         * CSV or TSV file to enrich.
+         */
+        private Path input;
+        /**
+         * Where to write the input lines with a country column appended; replaced once complete.
+         */
+        private Path output;
+        /**
+         * Zero-based column holding the phone number.
+         */
+        private int column;
+        /**
+         * Whether the first line is a header; it is copied with a "country" column name appended.
+         */
+        private boolean header = true;
+        /**
+         * Field delimiter; by default a tab for ".tsv" files and a comma otherwise.
+         */
+        private Character delimiter;
+        /**
+         * Lines per unit of parallel work.
+         */
+        private int chunkSize = 8192;
+        /**
+         * Threads doing lookups; at most twice as many chunks are held in memory at once.
+         */
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+    @Getter
+    @Setter
+    public static class Line {
+        /**
+         * Whether to listen.
+         */
+        private boolean enabled;
+        /**
+         * Port of the listener; 0 picks a free one.
+         */
+        private int port = 8089;
+        /**
+         * Event loop threads, each serving its share of the connections.
+         */
+        private int threads = Runtime.getRuntime().availableProcessors();
+        /**
+         * Read and write buffer of each connection; longer lines are answered as invalid.
+         */
+        private int bufferSize = 16 * 1024;
+    }
+
+    @Getter
+    @Setter
+    public static class Admission {
+        /**
+         * Whether requests are admitted through the limits below.
+         */
+        private boolean enabled;
+        /**
+         * Concurrent requests allowed at first; adjusted from then on by the observed latency.
+         */
+        private int initialLimit = 100;
+        private int minLimit = 8;
+        private int maxLimit = 1000;
+        /**
+         * Latency above which a request counts as a sign of overload and the limit is cut.
+         */
+        private Duration latencyThreshold = Duration.ofMillis(50);
+        /**
+         * Factor the limit is multiplied by on overload.
+         */
+        private double backoffRatio = 0.9;
+        /**
+         * Sent in Retry-After when the concurrency limit is reached.
+         */
+        private Duration retryAfter = Duration.ofSeconds(1);
+        /**
+         * Requests per quota period allowed for each known API key (api-key and the keys of quotas)
+         * without a quota of its own; 0 means unlimited.
+         */
+        private int quota;
+        /**
+         * Requests per quota period shared by all requests without a known API key; 0 means unlimited.
+         */
+        private int anonymousQuota;
+        private Duration quotaPeriod = Duration.ofSeconds(1);
+        /**
+         * Quotas by API key, overriding the common one.
+         */
+        private Map<String, Integer> quotas = new LinkedHashMap<>();
+        /**
+         * Counters each quota is split into, so that threads rarely update the same one.
+         */
+        private int quotaStripes = Runtime.getRuntime().availableProcessors();
+    }
+}
@@ -0,0 +1,41 @@
+package ru.dsec.phonecountry.config;
+
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import ru.dsec.phonecountry.model.dto.CountryResponse;
+import ru.dsec.phonecountry.model.dto.ErrorResponse;
+import ru.dsec.phonecountry.model.dto.IndexStats;
+import ru.dsec.phonecountry.model.dto.PhoneRequest;
+import ru.dsec.phonecountry.service.RefreshStatus;
+
+/**
+ * What a native image needs beyond what ahead-of-time processing finds on its own.
+ * Jsoup keeps its entity tables in code and needs no hints; the https protocol it fetches with
+ * is enabled in the native build arguments.
+ */
+public class PhoneCountryRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        hints.resources()
+                .registerPattern("country-codes.snapshot")
+                .registerPattern("numbering-plan.tsv");
+
+        // Bound through the Lombok accessors, including the nested sections
+        hints.reflection()
+                .registerType(PhoneCountryConfig.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(PhoneCountryConfig.Enrich.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(PhoneCountryConfig.Line.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS)
+                .registerType(PhoneCountryConfig.Admission.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS,
+                        MemberCategory.INVOKE_PUBLIC_METHODS);
+
+        // Read and written by Jackson in the functional routes too, which are not seen as controller signatures
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                PhoneRequest.class, CountryResponse.class, ErrorResponse.class, IndexStats.class, RefreshStatus.class);
+    }
+}
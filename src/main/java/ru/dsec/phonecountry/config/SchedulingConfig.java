@@ -0,0 +1,15 @@
+package ru.dsec.phonecountry.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs the periodic refresh, sync and log summary jobs, except in the "enrich" profile:
+ * a batch run exits once its file is written and must not start a refresh that the exit would cut short.
+ */
+@Configuration
+@EnableScheduling
+@Profile("!enrich")
+public class SchedulingConfig {
+}
@@ -0,0 +1,80 @@
+package ru.dsec.phonecountry.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.exception.AdminAccessDeniedException;
+import ru.dsec.phonecountry.model.dto.IndexStats;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.RefreshStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Operational endpoints, served in both serving modes; enabled with {@code phone.country.admin-enabled=true}.
+ * Every request must carry the configured {@code phone.country.admin-api-key} in the X-API-Key header, otherwise
+ * it gets 401. Client keys, {@code phone.country.api-key} and those of the admission quotas, do not qualify;
+ * with no admin key configured the endpoints reject everything.
+ */
+@RestController
+@RequestMapping("/api/admin")
+@ConditionalOnProperty(name = "phone.country.admin-enabled", havingValue = "true")
+public class AdminController {
+
+    private static final String API_KEY_HEADER = "X-API-Key";
+
+    private final PhoneCountryService service;
+    private final byte[] apiKey;
+
+    public AdminController(PhoneCountryService service, PhoneCountryConfig config) {
+        this.service = service;
+        this.apiKey = config.getAdminApiKey() == null || config.getAdminApiKey().isBlank()
+                ? null : config.getAdminApiKey().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Starts a refresh from Wikipedia without waiting for it; 409 if one is already running.
+     */
+    @PostMapping("/reload")
+    @Operation(summary = "Refresh country codes from Wikipedia in the background")
+    public ResponseEntity<RefreshStatus> reload(@RequestHeader(name = API_KEY_HEADER, required = false) String key) {
+        authorize(key);
+        boolean started = service.requestRefresh();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT)
+                .header(HttpHeaders.LOCATION, "/api/admin/status")
+                .body(service.refreshStatus());
+    }
+
+    @GetMapping("/status")
+    @Operation(summary = "State of the current or last refresh")
+    public RefreshStatus status(@RequestHeader(name = API_KEY_HEADER, required = false) String key) {
+        authorize(key);
+        return service.refreshStatus();
+    }
+
+    @GetMapping("/index")
+    @Operation(summary = "Statistics of the published lookup index")
+    public IndexStats index(@RequestHeader(name = API_KEY_HEADER, required = false) String key) {
+        authorize(key);
+        CountryCodeIndex index = service.index();
+        return new IndexStats(index.size(), index.depth(), index.nodeCount(), index.estimatedBytes(),
+                index.version(), service.refreshStatus().lastUpdated());
+    }
+
+    private void authorize(String key) {
+        // Constant time, so that the key cannot be guessed from response times
+        if (apiKey == null || key == null || !MessageDigest.isEqual(apiKey, key.getBytes(StandardCharsets.UTF_8))) {
+            throw new AdminAccessDeniedException("Valid X-API-Key required");
+        }
+    }
+}
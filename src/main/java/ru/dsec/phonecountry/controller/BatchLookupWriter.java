@@ -0,0 +1,112 @@
+package ru.dsec.phonecountry.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.service.CountryCodeEntry;
+import ru.dsec.phonecountry.service.LookupResult;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Streams lookups for many numbers. The input is either a JSON array or newline-delimited JSON,
+ * where each item is a phone number string or a {@code {"phoneNumber": ...}} object.
+ * One JSON line is written per item, in input order; a failed item produces an error line
+ * and does not stop the batch.
+ */
+@Component
+public class BatchLookupWriter {
+
+    // Results are pushed to the client in chunks of this many lines
+    private static final int FLUSH_SIZE = 256;
+
+    private final PhoneCountryService service;
+    private final ObjectMapper objectMapper;
+    private final PhoneCountryMetrics metrics;
+
+    public BatchLookupWriter(PhoneCountryService service, ObjectMapper objectMapper, PhoneCountryMetrics metrics) {
+        this.service = service;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+    }
+
+    public void write(InputStream body, OutputStream out) throws IOException {
+        try (MappingIterator<JsonNode> items = objectMapper.readerFor(JsonNode.class).readValues(body);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            int count = 0;
+            try {
+                while (items.hasNextValue()) {
+                    writeResult(generator, phoneNumberOf(items.nextValue()));
+                    if (++count % FLUSH_SIZE == 0) {
+                        generator.flush();
+                    }
+                }
+            } catch (JsonProcessingException e) {
+                // The rest of the input cannot be read, but everything before it has been answered
+                writeError(generator, null, HttpStatus.BAD_REQUEST, "Malformed batch input: " + e.getOriginalMessage());
+            } finally {
+                metrics.batch(count);
+            }
+        }
+    }
+
+    private void writeResult(JsonGenerator generator, String phoneNumber) throws IOException {
+        LookupResult result = service.lookup(phoneNumber);
+        if (result instanceof LookupResult.Invalid invalid) {
+            writeError(generator, phoneNumber, HttpStatus.BAD_REQUEST, invalid.message());
+            return;
+        }
+        if (result instanceof LookupResult.NotFound notFound) {
+            writeError(generator, phoneNumber, HttpStatus.NOT_FOUND, notFound.message());
+            return;
+        }
+        CountryCodeEntry entry = ((LookupResult.Found) result).entry();
+        generator.writeStartObject();
+        generator.writeStringField("phoneNumber", phoneNumber);
+        generator.writeStringField("country", entry.country());
+        generator.writeStringField("matchedPrefix", entry.prefix());
+        writeArray(generator, "countries", entry.countries());
+        writeArray(generator, "iso2", entry.iso2());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static void writeArray(JsonGenerator generator, String name, List<String> values) throws IOException {
+        generator.writeArrayFieldStart(name);
+        for (String value : values) {
+            generator.writeString(value);
+        }
+        generator.writeEndArray();
+    }
+
+    private static void writeError(JsonGenerator generator, String phoneNumber, HttpStatus status, String message)
+            throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("phoneNumber", phoneNumber);
+        generator.writeNumberField("status", status.value());
+        generator.writeStringField("message", message);
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+
+    private static String phoneNumberOf(JsonNode item) {
+        if (item == null || item.isNull()) {
+            return null;
+        }
+        if (item.isValueNode()) {
+            return item.asText();
+        }
+        JsonNode phoneNumber = item.get("phoneNumber");
+        return phoneNumber == null || phoneNumber.isNull() ? null : phoneNumber.asText();
+    }
+}
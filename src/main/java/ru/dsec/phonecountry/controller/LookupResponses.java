@@ -0,0 +1,91 @@
+package ru.dsec.phonecountry.controller;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.function.ServerResponse;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.model.dto.ErrorResponse;
+import ru.dsec.phonecountry.service.LookupResult;
+import ru.dsec.phonecountry.service.TypeaheadResult;
+
+/**
+ * Turns lookup results into responses for both serving modes.
+ * A found entry is answered with its pre-encoded JSON, in the shape of
+ * {@link ru.dsec.phonecountry.model.dto.CountryResponse}, so nothing is serialized per request.
+ * <p>
+ * Found and not-found answers only change when the code table does, so they carry an ETag made of
+ * the data version and the matched prefix, and the configured Cache-Control. For GET requests the
+ * framework answers a matching If-None-Match with 304. Typeahead answers are cached the same way,
+ * tagged with the trie node the digits lead to, so inputs ending at the same node share one ETag.
+ */
+@Component
+public class LookupResponses {
+
+    private final PhoneCountryConfig config;
+
+    public LookupResponses(PhoneCountryConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Builds the response type of one serving mode; the modes differ in nothing else.
+     *
+     * @param <R> {@link ResponseEntity} for the annotated controller, {@link ServerResponse} for the router.
+     */
+    @FunctionalInterface
+    public interface Encoder<R> {
+        R encode(HttpStatus status, HttpHeaders headers, Object body);
+    }
+
+    public static final Encoder<ResponseEntity<?>> ENTITY = (status, headers, body) ->
+            ResponseEntity.status(status).headers(headers).body(body);
+
+    public static final Encoder<ServerResponse> SERVER_RESPONSE = (status, headers, body) ->
+            ServerResponse.status(status).headers(h -> h.addAll(headers)).body(body);
+
+    public <R> R respond(LookupResult result, Encoder<R> encoder) {
+        if (result instanceof LookupResult.Found found) {
+            return respond(encoder, HttpStatus.OK, etag(found.version(), found.prefix()), found.entry().json());
+        }
+        if (result instanceof LookupResult.NotFound notFound) {
+            return respond(encoder, HttpStatus.NOT_FOUND, etag(notFound.version(), ""),
+                    new ErrorResponse(notFound.message()));
+        }
+        return respond(encoder, HttpStatus.BAD_REQUEST, null,
+                new ErrorResponse(((LookupResult.Invalid) result).message()));
+    }
+
+    public <R> R respond(TypeaheadResult result, Encoder<R> encoder) {
+        if (result instanceof TypeaheadResult.Suggested suggested) {
+            return respond(encoder, HttpStatus.OK, etag(suggested.version(), suggested.suggestion().key()),
+                    suggested.suggestion().json());
+        }
+        return respond(encoder, HttpStatus.BAD_REQUEST, null,
+                new ErrorResponse(((TypeaheadResult.Invalid) result).message()));
+    }
+
+    /**
+     * @param etag The entity tag of a cacheable answer, or {@code null} for one that must not be cached.
+     */
+    private <R> R respond(Encoder<R> encoder, HttpStatus status, String etag, Object body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (etag != null) {
+            headers.setETag(etag);
+            headers.setCacheControl(config.getCacheControl());
+        }
+        return encoder.encode(status, headers, body);
+    }
+
+    /**
+     * @param version The data version of the index that answered.
+     * @param prefix  The matched code without "+", empty if none matched, or another key of the answer.
+     * @return A strong entity tag, e.g. {@code "v1718000000000-7"}.
+     */
+    static String etag(long version, String prefix) {
+        return "\"v" + version + "-" + prefix + "\"";
+    }
+}
@@ -1,29 +1,77 @@
 package ru.dsec.phonecountry.controller;
 
 import io.swagger.v3.oas.annotations.Operation;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
-import ru.dsec.phonecountry.model.dto.CountryResponse;
 import ru.dsec.phonecountry.model.dto.PhoneRequest;
 import ru.dsec.phonecountry.service.PhoneCountryService;
 
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lookup endpoints; replaced by {@link PhoneCountryRouter} when {@code phone.country.serving=router}.
+ */
 @RestController
 @RequestMapping("/api/phone")
+@ConditionalOnProperty(name = "phone.country.serving", havingValue = "controller", matchIfMissing = true)
 public class PhoneCountryController {
 
     private final PhoneCountryService service;
+    private final BatchLookupWriter batchWriter;
+    private final LookupResponses responses;
 
-    public PhoneCountryController(PhoneCountryService service) {
+    public PhoneCountryController(PhoneCountryService service, BatchLookupWriter batchWriter,
+                                  LookupResponses responses) {
         this.service = service;
+        this.batchWriter = batchWriter;
+        this.responses = responses;
     }
 
     @PostMapping(value = "/country")
     @Operation(summary = "Determine country by phone number")
-    public ResponseEntity<CountryResponse> getCountry(@RequestBody PhoneRequest phoneRequest) {
-        String country = service.determineCountry(phoneRequest.phoneNumber());
-        return ResponseEntity.ok(new CountryResponse(country));
+    public ResponseEntity<?> getCountry(@RequestBody PhoneRequest phoneRequest) {
+        return responses.respond(service.lookup(phoneRequest.phoneNumber()), LookupResponses.ENTITY);
+    }
+
+    /**
+     * Cacheable variant of {@link #getCountry(PhoneRequest)}; answers 304 when If-None-Match still matches.
+     */
+    @GetMapping(value = "/country/{number}")
+    @Operation(summary = "Determine country by phone number, cacheable")
+    public ResponseEntity<?> getCountryByNumber(@PathVariable String number) {
+        return responses.respond(service.lookup(number), LookupResponses.ENTITY);
+    }
+
+    /**
+     * Current match and still possible countries for a number being typed; cacheable like the lookup.
+     */
+    @GetMapping(value = "/typeahead")
+    @Operation(summary = "Suggest countries for the beginning of a phone number")
+    public ResponseEntity<?> typeahead(@RequestParam(name = "number", defaultValue = "") String number) {
+        return responses.respond(service.typeahead(number), LookupResponses.ENTITY);
+    }
+
+    /**
+     * Streams lookups for many numbers, see {@link BatchLookupWriter}.
+     */
+    @PostMapping(value = "/countries",
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Determine countries for a stream of phone numbers")
+    public void getCountries(InputStream body, HttpServletResponse response) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        batchWriter.write(body, response.getOutputStream());
     }
 }
@@ -0,0 +1,71 @@
+package ru.dsec.phonecountry.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.function.RequestPredicate;
+import org.springframework.web.servlet.function.RequestPredicates;
+import org.springframework.web.servlet.function.RouterFunction;
+import org.springframework.web.servlet.function.RouterFunctions;
+import org.springframework.web.servlet.function.ServerResponse;
+import ru.dsec.phonecountry.model.dto.PhoneRequest;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.BiFunction;
+
+/**
+ * The lookup endpoints as functional routes, enabled with {@code phone.country.serving=router}.
+ * Same paths and bodies as {@link PhoneCountryController}, without annotation-driven argument
+ * resolution and handler adaptation on every request. The batch endpoint takes the same media types
+ * as the controller's and answers others with 415 or 406 before the body is read.
+ */
+@Configuration
+@ConditionalOnProperty(name = "phone.country.serving", havingValue = "router")
+public class PhoneCountryRouter {
+
+    private static final RequestPredicate BATCH_CONTENT_TYPE =
+            RequestPredicates.contentType(MediaType.APPLICATION_JSON, MediaType.APPLICATION_NDJSON);
+
+    @Bean
+    public RouterFunction<ServerResponse> phoneCountryRoutes(PhoneCountryService service,
+                                                             BatchLookupWriter batchWriter,
+                                                             LookupResponses responses) {
+        return RouterFunctions.route()
+                .POST("/api/phone/country", request ->
+                        responses.respond(service.lookup(request.body(PhoneRequest.class).phoneNumber()),
+                                LookupResponses.SERVER_RESPONSE))
+                .GET("/api/phone/country/{number}", request ->
+                        responses.respond(service.lookup(request.pathVariable("number")),
+                                LookupResponses.SERVER_RESPONSE))
+                .GET("/api/phone/typeahead", request ->
+                        responses.respond(service.typeahead(request.param("number").orElse("")),
+                                LookupResponses.SERVER_RESPONSE))
+                .POST("/api/phone/countries",
+                        BATCH_CONTENT_TYPE.and(RequestPredicates.accept(MediaType.APPLICATION_NDJSON)),
+                        request -> countries(batchWriter))
+                .POST("/api/phone/countries", request -> ServerResponse.status(BATCH_CONTENT_TYPE.test(request)
+                        ? HttpStatus.NOT_ACCEPTABLE : HttpStatus.UNSUPPORTED_MEDIA_TYPE).build())
+                .build();
+    }
+
+    private static ServerResponse countries(BatchLookupWriter batchWriter) {
+        BiFunction<HttpServletRequest, HttpServletResponse, ModelAndView> write = (request, response) -> {
+            try {
+                batchWriter.write(request.getInputStream(), response.getOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        };
+        return ServerResponse.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .build(write);
+    }
+}
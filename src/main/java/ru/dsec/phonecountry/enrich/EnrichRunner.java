@@ -0,0 +1,51 @@
+package ru.dsec.phonecountry.enrich;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.ExitCodeGenerator;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+/**
+ * Runs the "enrich" profile: enriches {@code phone.country.enrich.input} with the country codes of the
+ * snapshots, logs the throughput and exits, without serving HTTP or refreshing from Wikipedia: the profile
+ * starts offline and leaves out the scheduled jobs, see {@link ru.dsec.phonecountry.config.SchedulingConfig}.
+ * The exit code is reported through {@link ExitCodeGenerator}; the application's {@code main} closes
+ * the context and exits once the runner is done.
+ */
+@Component
+@Profile("enrich")
+@Slf4j
+public class EnrichRunner implements ApplicationRunner, ExitCodeGenerator {
+
+    private final PhoneCountryService service;
+    private final PhoneCountryConfig config;
+    private volatile int exitCode = 1;
+
+    public EnrichRunner(PhoneCountryService service, PhoneCountryConfig config) {
+        this.service = service;
+        this.config = config;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        PhoneCountryConfig.Enrich settings = config.getEnrich();
+        if (settings.getInput() == null || settings.getOutput() == null) {
+            throw new IllegalStateException(
+                    "Set phone.country.enrich.input and phone.country.enrich.output to run the enrich profile");
+        }
+        log.info("Enriching {} into {} with {} threads, {} lines per chunk", settings.getInput(),
+                settings.getOutput(), settings.getParallelism(), settings.getChunkSize());
+        FileEnricher.Report report = new FileEnricher(service).enrich(settings);
+        log.info("Enriched {}: {}", settings.getInput(), report);
+        exitCode = 0;
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+}
@@ -0,0 +1,259 @@
+package ru.dsec.phonecountry.enrich;
+
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.PhoneNumberNormalizer;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Appends a country column to every line of a CSV or TSV file, looking numbers up in parallel.
+ * <p>
+ * The file is read in chunks of lines on the calling thread, chunks are looked up on a pool of
+ * {@link PhoneCountryConfig.Enrich#getParallelism()} threads, and finished chunks are written in
+ * input order. At most twice as many chunks as threads are held at once, so memory stays bounded
+ * whatever the file size. Quoted fields are understood, but not line breaks inside them.
+ * <p>
+ * Numbers are matched against the published index directly: a file is not traffic, so its lines are
+ * neither counted in the lookup metrics nor written to the audit log.
+ */
+public class FileEnricher {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final PhoneCountryService service;
+
+    public FileEnricher(PhoneCountryService service) {
+        this.service = service;
+    }
+
+    /**
+     * Totals of one enrichment run.
+     *
+     * @param lines    Data lines, without the header.
+     * @param bytes    Size of the input file.
+     * @param found    Lines whose number matched a code.
+     * @param notFound Lines with a valid number and no matching code.
+     * @param invalid  Lines with a missing or invalid number.
+     */
+    public record Report(long lines, long bytes, long found, long notFound, long invalid, Duration elapsed) {
+
+        public double linesPerSecond() {
+            return lines / seconds();
+        }
+
+        public double megabytesPerSecond() {
+            return bytes / 1_000_000.0 / seconds();
+        }
+
+        private double seconds() {
+            return Math.max(elapsed.toNanos(), 1) / 1e9;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d lines (%d found, %d not found, %d invalid) in %.3f s: %.0f lines/s, %.1f MB/s",
+                    lines, found, notFound, invalid, seconds(), linesPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    public Report enrich(PhoneCountryConfig.Enrich settings) throws IOException {
+        Path input = settings.getInput();
+        Path output = settings.getOutput();
+        char delimiter = settings.getDelimiter() != null ? settings.getDelimiter()
+                : input.getFileName().toString().endsWith(".tsv") ? '\t' : ',';
+        int parallelism = Math.max(settings.getParallelism(), 1);
+        int chunkSize = Math.max(settings.getChunkSize(), 1);
+
+        long start = System.nanoTime();
+        Path parent = output.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, output.getFileName().toString(), ".part");
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        Totals totals = new Totals();
+        try {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Files.newInputStream(input), StandardCharsets.UTF_8), BUFFER_SIZE);
+                 BufferedWriter writer = new BufferedWriter(
+                         new OutputStreamWriter(Files.newOutputStream(temp), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+                if (settings.isHeader()) {
+                    String header = reader.readLine();
+                    if (header != null) {
+                        writer.write(header);
+                        writer.write(delimiter);
+                        writer.write("country");
+                        writer.write('\n');
+                    }
+                }
+                ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>(parallelism * 2);
+                List<String> lines;
+                while (!(lines = readChunk(reader, chunkSize)).isEmpty()) {
+                    if (inFlight.size() == parallelism * 2) {
+                        write(inFlight.removeFirst(), writer, totals);
+                    }
+                    List<String> chunk = lines;
+                    inFlight.addLast(pool.submit(() -> lookup(chunk, settings.getColumn(), delimiter)));
+                }
+                while (!inFlight.isEmpty()) {
+                    write(inFlight.removeFirst(), writer, totals);
+                }
+            }
+            try {
+                Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            pool.shutdownNow();
+            Files.deleteIfExists(temp);
+        }
+        return new Report(totals.lines, Files.size(input), totals.found, totals.notFound, totals.invalid,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static List<String> readChunk(BufferedReader reader, int chunkSize) throws IOException {
+        List<String> lines = new ArrayList<>(chunkSize);
+        String line;
+        while (lines.size() < chunkSize && (line = reader.readLine()) != null) {
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    private Chunk lookup(List<String> lines, int column, char delimiter) {
+        Chunk chunk = new Chunk(lines.size());
+        CountryCodeIndex index = service.index();
+        StringBuilder line = new StringBuilder(128);
+        for (String in : lines) {
+            long packed = PhoneNumberNormalizer.pack(field(in, column, delimiter));
+            String country = "";
+            if (!PhoneNumberNormalizer.isValid(packed)) {
+                chunk.invalid++;
+            } else {
+                int match = index.match(packed);
+                if (match != CountryCodeIndex.NO_MATCH) {
+                    chunk.found++;
+                    country = index.entry(match).country();
+                } else {
+                    chunk.notFound++;
+                }
+            }
+            line.setLength(0);
+            line.append(in).append(delimiter);
+            appendField(line, country, delimiter);
+            chunk.lines.add(line.toString());
+        }
+        return chunk;
+    }
+
+    private static void write(Future<Chunk> pending, BufferedWriter writer, Totals totals) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while enriching", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to enrich a chunk", e.getCause());
+        }
+        for (String line : chunk.lines) {
+            writer.write(line);
+            writer.write('\n');
+        }
+        totals.lines += chunk.lines.size();
+        totals.found += chunk.found;
+        totals.notFound += chunk.notFound;
+        totals.invalid += chunk.invalid;
+    }
+
+    /**
+     * @return The unquoted value of the given column, or {@code null} if the line has fewer columns.
+     */
+    static String field(String line, int column, char delimiter) {
+        int start = 0;
+        for (int current = 0; current < column; current++) {
+            start = skipField(line, start, delimiter);
+            if (start < 0) {
+                return null;
+            }
+        }
+        if (start < line.length() && line.charAt(start) == '"') {
+            StringBuilder value = new StringBuilder();
+            for (int i = start + 1; i < line.length(); i++) {
+                char c = line.charAt(i);
+                if (c == '"') {
+                    if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                        value.append('"');
+                        i++;
+                    } else {
+                        break;
+                    }
+                } else {
+                    value.append(c);
+                }
+            }
+            return value.toString();
+        }
+        int end = line.indexOf(delimiter, start);
+        return line.substring(start, end < 0 ? line.length() : end);
+    }
+
+    // Position after the delimiter ending the field at start, or -1 if it is the last field
+    private static int skipField(String line, int start, char delimiter) {
+        boolean quoted = false;
+        for (int i = start; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == delimiter && !quoted) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    private static void appendField(StringBuilder line, String value, char delimiter) {
+        if (value.indexOf(delimiter) < 0 && value.indexOf('"') < 0) {
+            line.append(value);
+            return;
+        }
+        line.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+
+    private static final class Chunk {
+        final List<String> lines;
+        int found;
+        int notFound;
+        int invalid;
+
+        Chunk(int size) {
+            lines = new ArrayList<>(size);
+        }
+    }
+
+    private static final class Totals {
+        long lines;
+        long found;
+        long notFound;
+        long invalid;
+    }
+}
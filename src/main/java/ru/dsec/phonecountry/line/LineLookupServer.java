@@ -0,0 +1,372 @@
+package ru.dsec.phonecountry.line;
+
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.PhoneNumberNormalizer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Lookup listener for internal clients for which HTTP and JSON cost more than the lookup itself.
+ * Clients send numbers one per line, as many as they like before reading, and get one answer line
+ * per number in the same order:
+ * <ul>
+ *     <li>{@code 7 RU}: the matched code and the ISO 3166-1 alpha-2 code of every country sharing it,
+ *     {@code --} for a country without one;</li>
+ *     <li>{@code -}: no country code matches;</li>
+ *     <li>{@code !}: not a valid phone number, also for lines longer than the buffer.</li>
+ * </ul>
+ * The last line may go without a newline once the client has shut its side down.
+ * A few event loop threads serve all connections from the published index of {@link PhoneCountryService}.
+ * Numbers are validated straight from the read buffer and answered by copying bytes encoded when the
+ * index was built, so a lookup allocates nothing. A client that does not read its answers stops being
+ * read from once its write buffer is full.
+ * <p>
+ * Lookups here are counted in {@code phone.line.lookups} only, not in {@code phone.lookup} or the audit log.
+ */
+@Component
+@ConditionalOnProperty(name = "phone.country.line.enabled", havingValue = "true")
+@Slf4j
+public class LineLookupServer implements SmartLifecycle {
+
+    static final byte[] NOT_FOUND = "-\n".getBytes(StandardCharsets.US_ASCII);
+    static final byte[] INVALID = "!\n".getBytes(StandardCharsets.US_ASCII);
+
+    private final PhoneCountryService service;
+    private final PhoneCountryConfig.Line config;
+    private final Counter found;
+    private final Counter notFound;
+    private final Counter invalid;
+
+    private volatile boolean running;
+    private ServerSocketChannel server;
+    private EventLoop[] loops;
+
+    public LineLookupServer(PhoneCountryService service, PhoneCountryConfig config, PhoneCountryMetrics metrics) {
+        this.service = service;
+        this.config = config.getLine();
+        this.found = metrics.lineLookups("found");
+        this.notFound = metrics.lineLookups("not_found");
+        this.invalid = metrics.lineLookups("invalid");
+    }
+
+    @Override
+    public void start() {
+        int longest = longestAnswer(service.index());
+        if (config.getBufferSize() < longest) {
+            throw new IllegalStateException("phone.country.line.buffer-size of " + config.getBufferSize()
+                    + " bytes is shorter than the longest answer, " + longest + " bytes");
+        }
+        try {
+            server = ServerSocketChannel.open();
+            server.bind(new InetSocketAddress(config.getPort()));
+            server.configureBlocking(false);
+            loops = new EventLoop[Math.max(1, config.getThreads())];
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new EventLoop(i);
+            }
+            // The first loop also accepts, and hands connections out in turn
+            server.register(loops[0].selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the line lookup listener on port " + config.getPort(), e);
+        }
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        log.info("Line lookup listener on port {} with {} event loops", port(), loops.length);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (loops != null) {
+            for (EventLoop loop : loops) {
+                loop.selector.wakeup();
+            }
+            for (EventLoop loop : loops) {
+                try {
+                    loop.thread.join(1000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (server != null) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                log.warn("Failed to close the line lookup listener", e);
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return The port listened on, which differs from the configured one if that was 0; -1 if not started.
+     */
+    public int port() {
+        return server != null ? server.socket().getLocalPort() : -1;
+    }
+
+    private static int longestAnswer(CountryCodeIndex index) {
+        int longest = Math.max(NOT_FOUND.length, INVALID.length);
+        for (int i = 0; i < index.size(); i++) {
+            longest = Math.max(longest, index.entry(i).line().length);
+        }
+        return longest;
+    }
+
+    private final class EventLoop implements Runnable {
+
+        private final Selector selector;
+        private final Thread thread;
+        private final Queue<SocketChannel> accepted = new ConcurrentLinkedQueue<>();
+        private final Consumer<SelectionKey> handler = this::handle;
+        // Only used by the accepting loop
+        private int nextLoop;
+
+        EventLoop(int id) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "line-lookup-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(handler);
+                    SocketChannel channel;
+                    while ((channel = accepted.poll()) != null) {
+                        register(channel);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Keeps the loop, and with it every connection it serves, alive
+                    log.error("Line lookup event loop failed", e);
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                close(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                log.warn("Failed to close a line lookup selector", e);
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            try {
+                channel.register(selector, SelectionKey.OP_READ, new Connection(channel, config.getBufferSize()));
+            } catch (IOException | RuntimeException e) {
+                log.warn("Failed to register a line lookup connection", e);
+                try {
+                    channel.close();
+                } catch (IOException closeFailure) {
+                    log.debug("Failed to close a line lookup connection", closeFailure);
+                }
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            // The listener's key has no connection; a failed accept must not close it
+            boolean connection = key.attachment() instanceof Connection;
+            try {
+                if (connection) {
+                    serve(key, (Connection) key.attachment());
+                } else {
+                    accept();
+                }
+            } catch (IOException e) {
+                if (connection) {
+                    log.debug("Line lookup connection closed: {}", e.getMessage());
+                    close(key);
+                } else {
+                    log.warn("Failed to accept a line lookup connection", e);
+                }
+            } catch (RuntimeException e) {
+                log.error("Line lookup connection failed, closing it", e);
+                if (connection) {
+                    close(key);
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel = server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            EventLoop loop = loops[nextLoop++ % loops.length];
+            loop.accepted.add(channel);
+            loop.selector.wakeup();
+        }
+
+        private void serve(SelectionKey key, Connection connection) throws IOException {
+            if (key.isReadable() && connection.channel.read(connection.in) < 0) {
+                // The client is done sending; it still gets the answers to what it sent
+                connection.closing = true;
+            }
+            boolean blocked;
+            do {
+                blocked = answer(connection);
+                connection.flush();
+                // Answers stopped for lack of space but all went out: there is room for more
+            } while (blocked && connection.out.position() == 0);
+            if (connection.out.position() > 0) {
+                key.interestOps(SelectionKey.OP_WRITE);
+            } else if (connection.closing) {
+                close(key);
+            } else {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                log.debug("Failed to close a line lookup connection", e);
+            }
+        }
+    }
+
+    /**
+     * Answers every complete line in the read buffer for which the write buffer has room, and the rest
+     * of the buffer as the last line once the client is done sending.
+     *
+     * @return {@code true} if lines were left unanswered because the write buffer is full.
+     * @throws IOException If an answer is longer than the write buffer, as after a refresh brought longer
+     *                     lines than the index checked at startup; the connection is closed.
+     */
+    boolean answer(Connection connection) throws IOException {
+        ByteBuffer in = connection.in.flip();
+        ByteBuffer out = connection.out;
+        CountryCodeIndex index = service.index();
+        int lineStart = in.position();
+        int limit = in.limit();
+        int foundCount = 0;
+        int notFoundCount = 0;
+        int invalidCount = 0;
+        boolean blocked = false;
+        for (int i = lineStart; i <= limit; i++) {
+            boolean lineEnd = i < limit ? in.get(i) == '\n' : connection.closing && lineStart < limit;
+            if (!lineEnd) {
+                continue;
+            }
+            // Past the newline, or the end of the input for a last line without one
+            int next = Math.min(i + 1, limit);
+            if (connection.discarding) {
+                // End of a line already answered as too long
+                connection.discarding = false;
+                lineStart = next;
+                continue;
+            }
+            byte[] answer;
+            long packed = PhoneNumberNormalizer.pack(in, lineStart, i);
+            int match = PhoneNumberNormalizer.isValid(packed) ? index.match(packed) : CountryCodeIndex.NO_MATCH;
+            if (match != CountryCodeIndex.NO_MATCH) {
+                answer = index.entry(match).line();
+            } else {
+                answer = PhoneNumberNormalizer.isValid(packed) ? NOT_FOUND : INVALID;
+            }
+            if (out.remaining() < answer.length) {
+                if (out.position() == 0) {
+                    // Would never fit, and waiting for room would spin
+                    log.warn("Line lookup answer of {} bytes exceeds buffer-size {}, closing the connection",
+                            answer.length, out.capacity());
+                    throw new IOException("Answer longer than the write buffer");
+                }
+                blocked = true;
+                break;
+            }
+            out.put(answer);
+            if (answer == INVALID) {
+                invalidCount++;
+            } else if (answer == NOT_FOUND) {
+                notFoundCount++;
+            } else {
+                foundCount++;
+            }
+            lineStart = next;
+        }
+        in.position(connection.discarding ? limit : lineStart);
+        in.compact();
+
+        if (!blocked && !in.hasRemaining()) {
+            // A full buffer without a newline: answer now and skip the rest of the line when it comes
+            if (out.remaining() < INVALID.length) {
+                blocked = true;
+            } else {
+                out.put(INVALID);
+                invalidCount++;
+                in.clear();
+                connection.discarding = true;
+            }
+        }
+
+        if (foundCount > 0) {
+            found.increment(foundCount);
+        }
+        if (notFoundCount > 0) {
+            notFound.increment(notFoundCount);
+        }
+        if (invalidCount > 0) {
+            invalid.increment(invalidCount);
+        }
+        return blocked;
+    }
+
+    static final class Connection {
+
+        final SocketChannel channel;
+        // Both are kept ready for writing into: received bytes, answers not yet sent
+        final ByteBuffer in;
+        final ByteBuffer out;
+        boolean discarding;
+        boolean closing;
+
+        Connection(SocketChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.in = ByteBuffer.allocateDirect(bufferSize);
+            this.out = ByteBuffer.allocateDirect(bufferSize);
+        }
+
+        void flush() throws IOException {
+            if (out.position() == 0) {
+                return;
+            }
+            out.flip();
+            channel.write(out);
+            out.compact();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.dsec.phonecountry.model;
 
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
@@ -7,6 +8,10 @@ import jakarta.persistence.Id;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * Row of the {@code country_code} table, whose schema is created by {@code schema.sql}.
+ * The application itself reads and writes the table through {@link ru.dsec.phonecountry.repository.CountryCodeStore}.
+ */
 @Entity
 @Getter
 @Setter
@@ -14,6 +19,7 @@ public class CountryCode {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
+    @Column(nullable = false, unique = true)
     private String code;
     private String countryName;
 }
@@ -1,4 +1,12 @@
 package ru.dsec.phonecountry.model.dto;
 
-public record CountryResponse(String country) {
+import java.util.List;
+
+/**
+ * @param country       The countries joined with ", ".
+ * @param matchedPrefix The matched country code, without "+".
+ * @param countries     The countries sharing the code.
+ * @param iso2          ISO 3166-1 alpha-2 code of each country, {@code null} where there is none.
+ */
+public record CountryResponse(String country, String matchedPrefix, List<String> countries, List<String> iso2) {
 }
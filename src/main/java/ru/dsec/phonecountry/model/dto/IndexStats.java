@@ -0,0 +1,14 @@
+package ru.dsec.phonecountry.model.dto;
+
+import java.time.Instant;
+
+/**
+ * @param prefixes    Codes in the published index, including numbering plan prefixes.
+ * @param depth       Digits in the longest code.
+ * @param nodes       Trie nodes.
+ * @param memoryBytes Estimated heap size of the index.
+ * @param version     Data version, as used in lookup ETags.
+ * @param lastRefresh When a refresh from Wikipedia last replaced the index; {@code null} if none did since startup.
+ */
+public record IndexStats(int prefixes, int depth, int nodes, long memoryBytes, long version, Instant lastRefresh) {
+}
@@ -0,0 +1,214 @@
+package ru.dsec.phonecountry.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Reads and writes the country code table with plain JDBC, without going through JPA.
+ * Only rows that actually changed are touched, so readers never see an empty table.
+ * Relies on the unique index on {@code code} and the {@code country_code_version} row from {@code schema.sql}.
+ * <p>
+ * Several instances may share the database: {@link #claimRefresh} elects the one that refreshes from Wikipedia,
+ * {@link #whileRefreshOwner} lets only that one write, and {@link #version()} tells the others when the table
+ * has changed.
+ */
+@Repository
+@Slf4j
+public class CountryCodeStore {
+
+    private static final String POSTGRESQL = "PostgreSQL";
+    private static final String SELECT_ALL = "SELECT code, country_name FROM country_code";
+    private static final String UPSERT_POSTGRES = "INSERT INTO country_code (code, country_name) VALUES (?, ?) "
+            + "ON CONFLICT (code) DO UPDATE SET country_name = EXCLUDED.country_name";
+    private static final String UPSERT_H2 = "MERGE INTO country_code (code, country_name) KEY (code) VALUES (?, ?)";
+    private static final String DELETE = "DELETE FROM country_code WHERE code = ?";
+    private static final String SELECT_VERSION = "SELECT version, refreshed_at FROM country_code_version WHERE id = 1";
+    private static final String BUMP_VERSION = "UPDATE country_code_version SET version = version + 1 WHERE id = 1";
+    private static final String MARK_REFRESHED = "UPDATE country_code_version SET refreshed_at = ? WHERE id = 1";
+    private static final String CLAIM_REFRESH = "UPDATE country_code_version SET refresh_owner = ?, "
+            + "refresh_lease_until = ? WHERE id = 1 AND (refresh_owner IS NULL OR refresh_lease_until < ?)";
+    private static final String RENEW_REFRESH = "UPDATE country_code_version SET refresh_lease_until = ? "
+            + "WHERE id = 1 AND refresh_owner = ?";
+    private static final String RELEASE_REFRESH = "UPDATE country_code_version SET refresh_owner = NULL, "
+            + "refresh_lease_until = NULL WHERE id = 1 AND refresh_owner = ?";
+    // Rows per round trip when reading; the table is small, this only keeps the driver from buffering it twice
+    private static final int FETCH_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CountryCodeStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Streams the whole table in one query, without building entities.
+     *
+     * @param action Called with the code, including "+", and the country names of every row.
+     * @return The number of rows read.
+     */
+    @Transactional(readOnly = true)
+    public int readAll(BiConsumer<String, String> action) {
+        int[] rows = {0};
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(SELECT_ALL);
+            // PostgreSQL only uses a cursor inside a transaction and with a fetch size
+            statement.setFetchSize(FETCH_SIZE);
+            return statement;
+        }, rs -> {
+            action.accept(rs.getString(1), rs.getString(2));
+            rows[0]++;
+        });
+        return rows[0];
+    }
+
+    /**
+     * Makes the table contain exactly the given codes, in one transaction.
+     * New and changed codes are written with one batched upsert, so a concurrent writer
+     * of the same code cannot make the batch fail on the unique index.
+     * The {@link #version()} is bumped in the same transaction if anything changed.
+     *
+     * @param codes Codes with "+" mapped to country names.
+     * @return The number of inserted, updated and deleted rows.
+     */
+    @Transactional
+    public Changes replaceAll(Map<String, String> codes) {
+        Map<String, String> remaining = new HashMap<>(codes);
+        List<Object[]> upserts = new ArrayList<>();
+        List<Object[]> deletes = new ArrayList<>();
+        int[] updated = {0};
+
+        readAll((code, countryName) -> {
+            if (!remaining.containsKey(code)) {
+                deletes.add(new Object[]{code});
+                return;
+            }
+            String newCountryName = remaining.remove(code);
+            if (!Objects.equals(countryName, newCountryName)) {
+                upserts.add(new Object[]{code, newCountryName});
+                updated[0]++;
+            }
+        });
+        remaining.forEach((code, countryName) -> upserts.add(new Object[]{code, countryName}));
+
+        if (!deletes.isEmpty()) {
+            jdbcTemplate.batchUpdate(DELETE, deletes);
+        }
+        if (!upserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(upsertStatement(), upserts);
+        }
+
+        Changes changes = new Changes(remaining.size(), updated[0], deletes.size());
+        if (!changes.isEmpty()) {
+            jdbcTemplate.update(BUMP_VERSION);
+        }
+        log.info("Country code table updated: {}", changes);
+        return changes;
+    }
+
+    /**
+     * @return A number that grows with every change of the table; 0 if it was never written.
+     */
+    public long version() {
+        return jdbcTemplate.query(SELECT_VERSION, rs -> rs.next() ? rs.getLong(1) : 0L);
+    }
+
+    /**
+     * @return When an instance last checked Wikipedia successfully, {@code null} if none did.
+     */
+    public Instant refreshedAt() {
+        return jdbcTemplate.query(SELECT_VERSION, (ResultSet rs) -> {
+            OffsetDateTime refreshedAt = rs.next() ? rs.getObject(2, OffsetDateTime.class) : null;
+            return refreshedAt != null ? refreshedAt.toInstant() : null;
+        });
+    }
+
+    /**
+     * Records a successful check of Wikipedia, whether or not it changed the table.
+     */
+    public void markRefreshed(Instant at) {
+        jdbcTemplate.update(MARK_REFRESHED, at.atOffset(ZoneOffset.UTC));
+    }
+
+    /**
+     * Makes the given instance the one that refreshes from Wikipedia, unless another one holds an unexpired lease.
+     * A single conditional update, so of instances claiming at once exactly one succeeds.
+     *
+     * @param owner      Identifies the claiming instance.
+     * @param now        Leases that ended before this are expired.
+     * @param leaseUntil Until when the claim holds if it is neither renewed nor released.
+     * @return {@code true} if the claim succeeded.
+     */
+    public boolean claimRefresh(String owner, Instant now, Instant leaseUntil) {
+        return jdbcTemplate.update(CLAIM_REFRESH, owner, leaseUntil.atOffset(ZoneOffset.UTC),
+                now.atOffset(ZoneOffset.UTC)) == 1;
+    }
+
+    /**
+     * Gives up a claim made with {@link #claimRefresh}; does nothing if another instance has taken over.
+     */
+    public void releaseRefresh(String owner) {
+        jdbcTemplate.update(RELEASE_REFRESH, owner);
+    }
+
+    /**
+     * Runs the task in a transaction if the given instance still holds the refresh claim, renewing it.
+     * The renewal locks the claim row until the transaction ends, so no other instance can take over
+     * while the task's reads and writes, which join the transaction, are running.
+     *
+     * @param leaseUntil The renewed end of the lease.
+     * @return The result of the task, or empty if another instance has taken over and it was not run.
+     */
+    @Transactional
+    public <T> Optional<T> whileRefreshOwner(String owner, Instant leaseUntil, Supplier<T> task) {
+        if (jdbcTemplate.update(RENEW_REFRESH, leaseUntil.atOffset(ZoneOffset.UTC), owner) != 1) {
+            return Optional.empty();
+        }
+        return Optional.of(task.get());
+    }
+
+    private String upsertStatement() {
+        String product = databaseProduct();
+        return switch (product) {
+            case POSTGRESQL -> UPSERT_POSTGRES;
+            case "H2" -> UPSERT_H2;
+            default -> throw new InvalidDataAccessApiUsageException("No upsert statement for database " + product);
+        };
+    }
+
+    private String databaseProduct() {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(Objects.requireNonNull(jdbcTemplate.getDataSource()),
+                    DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            throw new DataAccessResourceFailureException("Cannot determine the database product", e);
+        }
+    }
+
+    public record Changes(int inserted, int updated, int deleted) {
+
+        public boolean isEmpty() {
+            return inserted == 0 && updated == 0 && deleted == 0;
+        }
+    }
+}
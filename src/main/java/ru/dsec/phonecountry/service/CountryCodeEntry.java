@@ -0,0 +1,156 @@
+package ru.dsec.phonecountry.service;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * One country code of the index with everything a response needs, computed once per load:
+ * the countries sharing the code, their ISO 3166-1 alpha-2 codes and the response bodies
+ * already encoded as JSON and as a line protocol answer.
+ */
+public final class CountryCodeEntry {
+
+    private final String prefix;
+    private final List<String> countries;
+    private final List<String> iso2;
+    private final String country;
+    private final byte[] json;
+    private final byte[] line;
+
+    private CountryCodeEntry(String prefix, List<String> countries, List<String> iso2, String country) {
+        this.prefix = prefix;
+        this.countries = countries;
+        this.iso2 = iso2;
+        this.country = country;
+        this.json = encode(prefix, countries, iso2, country);
+        this.line = encodeLine(prefix, iso2);
+    }
+
+    /**
+     * @param prefix    Digits of the code, without "+".
+     * @param countries The countries sharing the code.
+     * @return A new entry.
+     */
+    public static CountryCodeEntry of(String prefix, List<String> countries) {
+        List<String> iso2 = new ArrayList<>(countries.size());
+        for (String name : countries) {
+            iso2.add(CountryIsoCodes.alpha2(name));
+        }
+        return new CountryCodeEntry(prefix, List.copyOf(countries), Collections.unmodifiableList(iso2),
+                String.join(", ", countries));
+    }
+
+    /**
+     * @param prefix Digits of another code.
+     * @return An entry for that code sharing this entry's countries, ISO codes and country name.
+     */
+    CountryCodeEntry withPrefix(String prefix) {
+        return new CountryCodeEntry(prefix, countries, iso2, country);
+    }
+
+    /**
+     * @return The code, without "+".
+     */
+    public String prefix() {
+        return prefix;
+    }
+
+    public List<String> countries() {
+        return countries;
+    }
+
+    /**
+     * @return The alpha-2 code of each of {@link #countries()}, {@code null} where there is none.
+     */
+    public List<String> iso2() {
+        return iso2;
+    }
+
+    /**
+     * @return The countries joined with ", ", as stored in the database.
+     */
+    public String country() {
+        return country;
+    }
+
+    /**
+     * @return The UTF-8 JSON body of a successful lookup; shared, must not be modified.
+     */
+    public byte[] json() {
+        return json;
+    }
+
+    /**
+     * @return The ASCII answer of the line protocol, "prefix ISO2[,ISO2...]" and a newline, with "--" for
+     * a country without an ISO code; shared, must not be modified.
+     */
+    public byte[] line() {
+        return line;
+    }
+
+    /**
+     * @param counted Objects already included in the estimate, shared between entries.
+     * @return The approximate heap size of this entry and whatever it does not share with counted ones.
+     */
+    long estimatedBytes(Set<Object> counted) {
+        return MemoryEstimate.object(6 * MemoryEstimate.REFERENCE)
+                + MemoryEstimate.string(prefix, counted)
+                + MemoryEstimate.strings(countries, counted)
+                + MemoryEstimate.strings(iso2, counted)
+                + MemoryEstimate.string(country, counted)
+                + MemoryEstimate.byteArray(json.length)
+                + MemoryEstimate.byteArray(line.length);
+    }
+
+    private static byte[] encodeLine(String prefix, List<String> iso2) {
+        StringBuilder line = new StringBuilder(prefix.length() + 3 * iso2.size() + 1);
+        line.append(prefix).append(' ');
+        for (int i = 0; i < iso2.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append(iso2.get(i) != null ? iso2.get(i) : "--");
+        }
+        return line.append('\n').toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] encode(String prefix, List<String> countries, List<String> iso2, String country) {
+        StringBuilder json = new StringBuilder(64 + country.length() * 2);
+        json.append("{\"country\":");
+        appendString(json, country);
+        json.append(",\"matchedPrefix\":");
+        appendString(json, prefix);
+        json.append(",\"countries\":");
+        appendArray(json, countries);
+        json.append(",\"iso2\":");
+        appendArray(json, iso2);
+        json.append('}');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    static void appendArray(StringBuilder json, List<String> values) {
+        json.append('[');
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendString(json, values.get(i));
+        }
+        json.append(']');
+    }
+
+    static void appendString(StringBuilder json, String value) {
+        if (value == null) {
+            json.append("null");
+            return;
+        }
+        json.append('"');
+        JsonStringEncoder.getInstance().quoteAsString(value, json);
+        json.append('"');
+    }
+}
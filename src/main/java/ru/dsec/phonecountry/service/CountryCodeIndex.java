@@ -0,0 +1,379 @@
+package ru.dsec.phonecountry.service;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Immutable digit trie used for longest-prefix lookup of country calling codes.
+ * Nodes are stored in flat arrays with ten child slots per node, so a lookup is
+ * a plain array walk of at most {@link #MAX_DEPTH} steps and allocates nothing, however many
+ * codes the index holds: country codes, area codes and other national ranges alike.
+ * Instances are built once per load and published as a whole, tagged with a data version.
+ * <p>
+ * Typeahead answers are computed on first use, once per trie node, and kept for the life of the trie.
+ */
+public final class CountryCodeIndex {
+
+    /**
+     * Maximum number of digits in an E.164 number, and so the longest walk.
+     */
+    public static final int MAX_DEPTH = 15;
+
+    public static final CountryCodeIndex EMPTY = build(Map.of());
+
+    /**
+     * Returned by {@link #match(long)} when no code prefixes the number.
+     */
+    public static final int NO_MATCH = -1;
+
+    private static final int RADIX = 10;
+    private static final int ROOT = 0;
+    private static final int NO_VALUE = -1;
+
+    // node * RADIX + digit -> child node; 0 means "no child" since the root is never a child
+    private final int[] children;
+    // node -> position in entries, or NO_VALUE
+    private final int[] values;
+    private final CountryCodeEntry[] entries;
+    private final long version;
+    private final int depth;
+    private final long estimatedBytes;
+    // Open nodes first, then the answer once the walk has left the trie for each entry, then for no match
+    private final AtomicReferenceArray<PrefixSuggestion> suggestions;
+
+    private CountryCodeIndex(int[] children, int[] values, CountryCodeEntry[] entries, long version,
+                             int depth, long estimatedBytes, AtomicReferenceArray<PrefixSuggestion> suggestions) {
+        this.children = children;
+        this.values = values;
+        this.entries = entries;
+        this.version = version;
+        this.depth = depth;
+        this.estimatedBytes = estimatedBytes;
+        this.suggestions = suggestions;
+    }
+
+    /**
+     * Builds an index from a map of digit-only codes (without "+") to country names
+     * joined with ", ", as stored in the database.
+     * Codes containing anything other than ASCII digits can never match a cleaned
+     * number and are skipped.
+     *
+     * @param codes The code to country mapping.
+     * @return A new immutable index.
+     */
+    public static CountryCodeIndex build(Map<String, String> codes) {
+        Builder builder = builder(codes.size());
+        codes.forEach(builder::add);
+        return builder.build();
+    }
+
+    /**
+     * @param expectedCodes A sizing hint.
+     * @return A builder that adds codes to the trie one by one, without an intermediate map.
+     */
+    public static Builder builder(int expectedCodes) {
+        return new Builder(expectedCodes);
+    }
+
+    /**
+     * Finds the entry of the longest code that prefixes a packed number, so that everything
+     * about the match can be read without walking the trie twice.
+     *
+     * @param packed A valid number packed by {@link PhoneNumberNormalizer#pack(String)}.
+     * @return The entry position, or {@link #NO_MATCH}.
+     */
+    public int match(long packed) {
+        return findEntry(packed);
+    }
+
+    /**
+     * @param entry A position returned by {@link #match(long)}.
+     * @return The code of that entry, without "+".
+     */
+    public String prefix(int entry) {
+        return entries[entry].prefix();
+    }
+
+    /**
+     * @param entry A position returned by {@link #match(long)}.
+     * @return The entry itself, with all countries, ISO codes and the encoded response.
+     */
+    public CountryCodeEntry entry(int entry) {
+        return entries[entry];
+    }
+
+    /**
+     * Follows the digits typed so far as deep as the trie goes. While the walk is still inside the trie,
+     * the answer lists the countries of every code below the node reached as well as the one matched so
+     * far; once it has left the trie, or reached a node without children, only the match can still apply.
+     *
+     * @param digits ASCII digits only, at most {@link #MAX_DEPTH}; possibly none.
+     * @return The shared answer for where the digits lead.
+     */
+    public PrefixSuggestion suggest(CharSequence digits) {
+        int node = ROOT;
+        int match = values[ROOT];
+        int i = 0;
+        for (; i < digits.length(); i++) {
+            int child = children[node * RADIX + digits.charAt(i) - '0'];
+            if (child == 0) {
+                break;
+            }
+            node = child;
+            if (values[node] != NO_VALUE) {
+                match = values[node];
+            }
+        }
+        if (i < digits.length() || !hasChildren(node)) {
+            int slot = values.length + (match == NO_VALUE ? entries.length : match);
+            PrefixSuggestion suggestion = suggestions.get(slot);
+            if (suggestion == null) {
+                CountryCodeEntry entry = match == NO_VALUE ? null : entries[match];
+                suggestion = new PrefixSuggestion(entry == null ? "" : entry.prefix(), entry,
+                        entry == null ? List.of() : new TreeSet<>(entry.countries()), true);
+                suggestions.compareAndSet(slot, null, suggestion);
+            }
+            return suggestion;
+        }
+        PrefixSuggestion suggestion = suggestions.get(node);
+        if (suggestion == null) {
+            CountryCodeEntry entry = match == NO_VALUE ? null : entries[match];
+            suggestion = new PrefixSuggestion(digits.subSequence(0, i) + "*", entry, possibleCountries(node, entry),
+                    false);
+            // Racing threads compute equal answers, whichever is kept does not matter
+            suggestions.compareAndSet(node, null, suggestion);
+        }
+        return suggestion;
+    }
+
+    /**
+     * @return The data version assigned when the index was published, 0 if it never was.
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * @param version The data version.
+     * @return An index with the same codes and the given version; the trie itself is shared.
+     */
+    public CountryCodeIndex withVersion(long version) {
+        return new CountryCodeIndex(children, values, entries, version, depth, estimatedBytes, suggestions);
+    }
+
+    /**
+     * @return The number of codes stored in the index.
+     */
+    public int size() {
+        return entries.length;
+    }
+
+    /**
+     * @return The number of digits in the longest code, and so the longest walk a lookup actually takes.
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     * @return The number of trie nodes, including the root.
+     */
+    public int nodeCount() {
+        return values.length;
+    }
+
+    /**
+     * @return The approximate heap size of the index in bytes: the trie arrays plus the entries,
+     * with lists and names shared between entries counted once. Assumes compressed references.
+     */
+    public long estimatedBytes() {
+        return estimatedBytes;
+    }
+
+    private boolean hasChildren(int node) {
+        for (int digit = 0; digit < RADIX; digit++) {
+            if (children[node * RADIX + digit] != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Set<String> possibleCountries(int node, CountryCodeEntry match) {
+        Set<String> countries = new TreeSet<>();
+        if (match != null) {
+            countries.addAll(match.countries());
+        }
+        int[] pending = new int[Math.max(1, (depth + 1) * RADIX)];
+        int size = 0;
+        pending[size++] = node;
+        while (size > 0) {
+            int current = pending[--size];
+            if (values[current] != NO_VALUE) {
+                countries.addAll(entries[values[current]].countries());
+            }
+            for (int digit = 0; digit < RADIX; digit++) {
+                int child = children[current * RADIX + digit];
+                if (child != 0) {
+                    pending[size++] = child;
+                }
+            }
+        }
+        return countries;
+    }
+
+    private int findEntry(long packed) {
+        int length = PhoneNumberNormalizer.length(packed);
+        int node = ROOT;
+        int match = values[ROOT];
+        for (int i = 0; i < length; i++) {
+            node = children[node * RADIX + PhoneNumberNormalizer.digitAt(packed, i)];
+            if (node == 0) {
+                break;
+            }
+            if (values[node] != NO_VALUE) {
+                match = values[node];
+            }
+        }
+        return match;
+    }
+
+    /**
+     * Incremental trie construction. Not thread-safe; the built index is.
+     * Codes with the same countries share one set of country and ISO code lists.
+     */
+    public static final class Builder {
+
+        private int[] children;
+        private int[] values;
+        private CountryCodeEntry[] entries;
+        private final Map<List<String>, CountryCodeEntry> byCountries = new HashMap<>();
+        private int nodes = 1;
+        private int size;
+        private int depth;
+
+        private Builder(int expectedCodes) {
+            int capacity = Math.max(expectedCodes, 1);
+            // Country codes share most of their leading digits, two new nodes per code is plenty
+            children = new int[capacity * 2 * RADIX];
+            values = new int[capacity * 2];
+            Arrays.fill(values, NO_VALUE);
+            entries = new CountryCodeEntry[capacity];
+        }
+
+        /**
+         * Adds every code of another index, e.g. to overlay deeper prefixes on it.
+         *
+         * @param index The index to copy codes from.
+         * @return This builder.
+         */
+        public Builder addAll(CountryCodeIndex index) {
+            for (CountryCodeEntry entry : index.entries) {
+                add(entry.prefix(), entry.countries());
+            }
+            return this;
+        }
+
+        /**
+         * Adds a code, replacing the countries of an already added equal code.
+         *
+         * @param code    Digits of the code, without "+"; other codes, also empty ones, are skipped.
+         * @param country The country names joined with ", ", as stored in the database.
+         * @return This builder.
+         */
+        public Builder add(String code, String country) {
+            return add(code, List.of(country.split(", ")));
+        }
+
+        /**
+         * Adds a code, replacing the countries of an already added equal code.
+         *
+         * @param code      Digits of the code, without "+"; other codes, also empty ones, are skipped.
+         * @param countries The countries sharing the code.
+         * @return This builder.
+         */
+        public Builder add(String code, List<String> countries) {
+            if (!isDigits(code)) {
+                return this;
+            }
+            CountryCodeEntry shared = byCountries.get(countries);
+            CountryCodeEntry entry = shared != null ? shared.withPrefix(code) : CountryCodeEntry.of(code, countries);
+            if (shared == null) {
+                byCountries.put(entry.countries(), entry);
+            }
+            int node = ROOT;
+            for (int i = 0; i < code.length(); i++) {
+                int slot = node * RADIX + (code.charAt(i) - '0');
+                if (children[slot] == 0) {
+                    ensureNodeCapacity(nodes + 1);
+                    children[slot] = nodes++;
+                }
+                node = children[slot];
+            }
+            depth = Math.max(depth, code.length());
+            if (values[node] != NO_VALUE) {
+                entries[values[node]] = entry;
+                return this;
+            }
+            if (size == entries.length) {
+                entries = Arrays.copyOf(entries, size * 2);
+            }
+            values[node] = size;
+            entries[size++] = entry;
+            return this;
+        }
+
+        public CountryCodeIndex build() {
+            int[] builtChildren = Arrays.copyOf(children, nodes * RADIX);
+            int[] builtValues = Arrays.copyOf(values, nodes);
+            CountryCodeEntry[] builtEntries = Arrays.copyOf(entries, size);
+            return new CountryCodeIndex(builtChildren, builtValues, builtEntries, 0, depth,
+                    estimateBytes(builtChildren, builtValues, builtEntries),
+                    new AtomicReferenceArray<>(nodes + size + 1));
+        }
+
+        private void ensureNodeCapacity(int required) {
+            if (required <= values.length) {
+                return;
+            }
+            int oldLength = values.length;
+            int newLength = Math.max(required, oldLength * 2);
+            children = Arrays.copyOf(children, newLength * RADIX);
+            values = Arrays.copyOf(values, newLength);
+            Arrays.fill(values, oldLength, newLength, NO_VALUE);
+        }
+    }
+
+    private static long estimateBytes(int[] children, int[] values, CountryCodeEntry[] entries) {
+        long bytes = MemoryEstimate.object(3 * MemoryEstimate.REFERENCE + 2 * Long.BYTES + Integer.BYTES)
+                + MemoryEstimate.intArray(children.length)
+                + MemoryEstimate.intArray(values.length)
+                + MemoryEstimate.referenceArray(entries.length);
+        Set<Object> counted = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (CountryCodeEntry entry : entries) {
+            bytes += entry.estimatedBytes(counted);
+        }
+        return bytes;
+    }
+
+    private static boolean isDigits(String code) {
+        if (code.isEmpty()) {
+            // Would match every number
+            return false;
+        }
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,194 @@
+package ru.dsec.phonecountry.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Compact binary snapshot of the parsed code table, so the index can be restored
+ * without network or database access.
+ * <p>
+ * Layout, big-endian:
+ * <pre>
+ * int    magic "PCCS"
+ * short  format version
+ * long   creation time, epoch millis
+ * int    number of entries
+ * entry* short code length, code digits (ASCII, no "+"),
+ *        byte country count, (short name length, UTF-8 name)*
+ * int    CRC32 of everything above
+ * </pre>
+ * Codes and names of up to 65535 UTF-8 bytes and up to 255 countries per code fit; larger ones are refused
+ * rather than truncated.
+ */
+public final class CountryCodeSnapshot {
+
+    static final int MAGIC = 0x50434353;
+    static final short VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 2 + 8 + 4;
+    private static final int MAX_COUNTRIES = 0xFF;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int CHECKSUM_SIZE = 4;
+
+    private CountryCodeSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot, replacing the target file only once it is complete.
+     *
+     * @param codeToCountries Codes with "+" mapped to their countries.
+     * @param file            The target file.
+     * @throws IOException If the file cannot be written, or an entry does not fit the format.
+     */
+    public static void write(Map<String, List<String>> codeToCountries, Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(codeToCountries.size() * 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(codeToCountries.size());
+        for (Map.Entry<String, List<String>> entry : codeToCountries.entrySet()) {
+            String code = entry.getKey();
+            writeString(out, code.startsWith("+") ? code.substring(1) : code);
+            if (entry.getValue().size() > MAX_COUNTRIES) {
+                throw new IOException("Code " + code + " has " + entry.getValue().size()
+                        + " countries, the snapshot holds at most " + MAX_COUNTRIES);
+            }
+            out.writeByte(entry.getValue().size());
+            for (String country : entry.getValue()) {
+                writeString(out, country);
+            }
+        }
+        CRC32 crc = new CRC32();
+        crc.update(bytes.toByteArray());
+        out.writeInt((int) crc.getValue());
+        out.flush();
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, bytes.toByteArray());
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file and decodes it straight into an index.
+     *
+     * @param file The snapshot file.
+     * @return The restored index.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static CountryCodeIndex read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return decode(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Decodes a snapshot from a stream, for snapshots that are not plain files (e.g. inside a jar).
+     *
+     * @param in The snapshot contents.
+     * @return The restored index.
+     * @throws IOException If the stream cannot be read or is not a valid snapshot.
+     */
+    public static CountryCodeIndex read(InputStream in) throws IOException {
+        return decode(ByteBuffer.wrap(in.readAllBytes()));
+    }
+
+    static CountryCodeIndex decode(ByteBuffer buffer) throws IOException {
+        int length = buffer.remaining();
+        if (length < HEADER_SIZE + CHECKSUM_SIZE) {
+            throw new IOException("Snapshot is truncated");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(buffer.position(), length - CHECKSUM_SIZE));
+        if ((int) crc.getValue() != buffer.getInt(buffer.position() + length - CHECKSUM_SIZE)) {
+            throw new IOException("Snapshot checksum mismatch");
+        }
+        if (buffer.getInt() != MAGIC) {
+            throw new IOException("Not a country code snapshot");
+        }
+        short version = buffer.getShort();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        buffer.getLong(); // creation time
+
+        try {
+            int count = buffer.getInt();
+            CountryCodeIndex.Builder builder = CountryCodeIndex.builder(count);
+            for (int i = 0; i < count; i++) {
+                String code = readString(buffer);
+                int countryCount = Byte.toUnsignedInt(buffer.get());
+                String[] countries = new String[countryCount];
+                for (int j = 0; j < countryCount; j++) {
+                    countries[j] = readString(buffer);
+                }
+                builder.add(code, List.of(countries));
+            }
+            return builder.build();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Snapshot is truncated", e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("String of " + bytes.length + " bytes, the snapshot holds at most "
+                    + MAX_STRING_BYTES);
+        }
+        out.writeShort(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates a snapshot from a saved copy of the Wikipedia page; used by the Gradle build.
+     *
+     * @param args The saved page and the snapshot file to write.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CountryCodeSnapshot <saved page.html> <output.snapshot>");
+            System.exit(2);
+        }
+        Map<String, List<String>> codeToCountries = WikipediaCountryCodeParser.parse(
+                Files.readAllBytes(Path.of(args[0])));
+        if (codeToCountries.isEmpty()) {
+            System.err.println("No country codes found in " + args[0]);
+            System.exit(1);
+        }
+        write(codeToCountries, Path.of(args[1]));
+        System.out.println("Wrote " + codeToCountries.size() + " country codes to " + args[1]);
+    }
+}
@@ -0,0 +1,63 @@
+package ru.dsec.phonecountry.service;
+
+import java.text.Normalizer;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Resolves the country names used on the Wikipedia page to ISO 3166-1 alpha-2 codes,
+ * using the English country names known to the JDK.
+ */
+public final class CountryIsoCodes {
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}");
+    private static final Pattern QUALIFIER = Pattern.compile("\\s*\\(.*\\)");
+    private static final Pattern SEPARATORS = Pattern.compile("[^a-z]+");
+
+    // Wikipedia names that differ from the JDK (CLDR) ones by more than punctuation
+    private static final Map<String, String> ALIASES = Map.of(
+            "Congo", "CG",
+            "Czech Republic", "CZ",
+            "Democratic Republic of the Congo", "CD",
+            "East Timor", "TL",
+            "Hong Kong", "HK",
+            "Ivory Coast", "CI",
+            "Macau", "MO",
+            "Palestine", "PS",
+            "Saint Vincent and the Grenadines", "VC",
+            "United States Virgin Islands", "VI");
+
+    private static final Map<String, String> BY_NAME = byName();
+
+    private CountryIsoCodes() {
+    }
+
+    /**
+     * @param country A country name as listed on the Wikipedia page.
+     * @return The alpha-2 code, or {@code null} for territories without one (e.g. Abkhazia).
+     */
+    public static String alpha2(String country) {
+        String alias = ALIASES.get(country);
+        return alias != null ? alias : BY_NAME.get(key(country));
+    }
+
+    private static Map<String, String> byName() {
+        String[] codes = Locale.getISOCountries();
+        Map<String, String> byName = new HashMap<>(codes.length * 2);
+        for (String code : codes) {
+            byName.put(key(new Locale("", code).getDisplayCountry(Locale.ENGLISH)), code);
+        }
+        return byName;
+    }
+
+    // "São Tomé & Príncipe" and "Sao Tome and Principe", "St. Lucia" and "Saint Lucia" give the same key
+    private static String key(String name) {
+        String plain = MARKS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        plain = QUALIFIER.matcher(plain).replaceAll("")
+                .replace("&", "and")
+                .replace("St. ", "Saint ");
+        return SEPARATORS.matcher(plain.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+}
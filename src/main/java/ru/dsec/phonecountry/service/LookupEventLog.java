@@ -0,0 +1,188 @@
+package ru.dsec.phonecountry.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Replaces per-lookup log lines. Lookups only bump striped counters; a periodic summary
+ * reports the totals together with a few sampled failing numbers. Unless the audit log is enabled,
+ * a sample keeps only the first characters of the number and masks the rest, so the summary holds
+ * no subscriber numbers; either way samples are truncated and stripped of control characters, as
+ * invalid input is whatever the client sent.
+ * <p>
+ * When {@code phone.country.audit-enabled} is set, every lookup is also queued to a bounded
+ * buffer and written to the {@code phone.audit} logger by a background thread. Events that
+ * do not fit in the buffer are dropped and counted, so a slow appender never blocks requests.
+ */
+@Component
+@Slf4j
+public class LookupEventLog {
+
+    private static final Logger AUDIT = LoggerFactory.getLogger("phone.audit");
+    // Characters of a sampled number kept unmasked without the audit log: about the country code
+    private static final int SAMPLE_PREFIX = 4;
+    private static final int SAMPLE_MAX_LENGTH = 32;
+
+    private final LongAdder found = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder invalid = new LongAdder();
+
+    private final int sampleSize;
+    private final boolean rawSamples;
+    private final AtomicInteger samplesTaken = new AtomicInteger();
+    private final Queue<String> samples = new ConcurrentLinkedQueue<>();
+
+    private final BlockingQueue<AuditEvent> auditQueue;
+    private final LongAdder auditDropped = new LongAdder();
+    private final Thread auditWriter;
+
+    public LookupEventLog(PhoneCountryConfig config) {
+        this.sampleSize = config.getLogSampleSize();
+        this.rawSamples = config.isAuditEnabled();
+        if (config.isAuditEnabled()) {
+            auditQueue = new ArrayBlockingQueue<>(config.getAuditBufferSize());
+            auditWriter = new Thread(this::writeAuditEvents, "phone-audit-writer");
+            auditWriter.setDaemon(true);
+            auditWriter.start();
+        } else {
+            auditQueue = null;
+            auditWriter = null;
+        }
+    }
+
+    public void found(String phoneNumber, String country) {
+        found.increment();
+        audit(phoneNumber, "found", country);
+    }
+
+    public void notFound(String phoneNumber) {
+        notFound.increment();
+        sample("not_found", phoneNumber);
+        audit(phoneNumber, "not_found", null);
+    }
+
+    public void invalid(String phoneNumber) {
+        invalid.increment();
+        sample("invalid", phoneNumber);
+        audit(phoneNumber, "invalid", null);
+    }
+
+    /**
+     * Logs the lookups since the previous summary; silent when there were none.
+     */
+    @Scheduled(fixedDelayString = "${phone.country.log-summary-interval:PT1M}",
+            initialDelayString = "${phone.country.log-summary-interval:PT1M}")
+    public void logSummary() {
+        Summary summary = drainSummary();
+        if (summary.found() + summary.notFound() + summary.invalid() + summary.auditDropped() == 0) {
+            return;
+        }
+        log.info("Lookups: found={}, not_found={}, invalid={}, audit_dropped={}, samples={}",
+                summary.found(), summary.notFound(), summary.invalid(), summary.auditDropped(), summary.samples());
+    }
+
+    Summary drainSummary() {
+        List<String> sampled = new ArrayList<>(sampleSize);
+        String sample;
+        while ((sample = samples.poll()) != null) {
+            sampled.add(sample);
+        }
+        samplesTaken.set(0);
+        return new Summary(found.sumThenReset(), notFound.sumThenReset(), invalid.sumThenReset(),
+                auditDropped.sumThenReset(), sampled);
+    }
+
+    @PreDestroy
+    public void close() {
+        if (auditWriter == null) {
+            return;
+        }
+        auditWriter.interrupt();
+        AuditEvent event;
+        while ((event = auditQueue.poll()) != null) {
+            writeAuditEvent(event);
+        }
+    }
+
+    private void sample(String outcome, String phoneNumber) {
+        // Plain read first, so the counter is only contended while the sample is still being filled
+        if (samplesTaken.get() < sampleSize && samplesTaken.incrementAndGet() <= sampleSize) {
+            samples.add(outcome + ":" + sampleOf(phoneNumber, rawSamples));
+        }
+    }
+
+    /**
+     * @param raw Keep the number as sent, up to {@link #SAMPLE_MAX_LENGTH} characters, rather than masked.
+     * @return The number with control characters and quotes replaced, so that it cannot break a log line.
+     */
+    static String sampleOf(String phoneNumber, boolean raw) {
+        if (phoneNumber == null) {
+            return "null";
+        }
+        int length = phoneNumber.length();
+        int kept = Math.min(length, raw ? SAMPLE_MAX_LENGTH : SAMPLE_PREFIX);
+        StringBuilder sample = new StringBuilder(Math.min(length, SAMPLE_MAX_LENGTH) + 3);
+        appendEscaped(sample, phoneNumber, kept);
+        if (raw && kept < length) {
+            sample.append("...");
+        } else if (!raw) {
+            sample.append("*".repeat(Math.min(length, SAMPLE_MAX_LENGTH) - kept));
+        }
+        return sample.toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, String value, int length) {
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            // Line breaks would forge log lines, quotes would end the quoted audit field
+            boolean unsafe = Character.isISOControl(c) || c == '\u2028' || c == '\u2029' || c == '"';
+            out.append(unsafe ? '?' : c);
+        }
+    }
+
+    private void audit(String phoneNumber, String outcome, String country) {
+        if (auditQueue != null && !auditQueue.offer(new AuditEvent(phoneNumber, outcome, country))) {
+            auditDropped.increment();
+        }
+    }
+
+    private void writeAuditEvents() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                writeAuditEvent(auditQueue.take());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void writeAuditEvent(AuditEvent event) {
+        String number = event.phoneNumber();
+        if (number != null) {
+            StringBuilder escaped = new StringBuilder(number.length());
+            appendEscaped(escaped, number, number.length());
+            number = escaped.toString();
+        }
+        AUDIT.info("outcome={} number=\"{}\" country=\"{}\"", event.outcome(), number, event.country());
+    }
+
+    record Summary(long found, long notFound, long invalid, long auditDropped, List<String> samples) {
+    }
+
+    private record AuditEvent(String phoneNumber, String outcome, String country) {
+    }
+}
@@ -0,0 +1,46 @@
+package ru.dsec.phonecountry.service;
+
+/**
+ * Outcome of a phone number lookup. Misses and invalid input are ordinary results,
+ * so callers can answer them without the cost of throwing an exception.
+ */
+public sealed interface LookupResult {
+
+    /**
+     * @param entry   The matched country code with its countries.
+     * @param version The data version of the index that answered.
+     */
+    record Found(CountryCodeEntry entry, long version) implements LookupResult {
+
+        /**
+         * @return The matched country code, without "+".
+         */
+        public String prefix() {
+            return entry.prefix();
+        }
+
+        /**
+         * @return The countries joined with ", ".
+         */
+        public String country() {
+            return entry.country();
+        }
+    }
+
+    /**
+     * @param phoneNumber The number as it was given.
+     * @param version     The data version of the index that answered.
+     */
+    record NotFound(String phoneNumber, long version) implements LookupResult {
+
+        public String message() {
+            return "Country not found for phone number: " + phoneNumber;
+        }
+    }
+
+    /**
+     * @param message Why the number was rejected, see {@link PhoneNumberNormalizer#errorMessage(long)}.
+     */
+    record Invalid(String message) implements LookupResult {
+    }
+}
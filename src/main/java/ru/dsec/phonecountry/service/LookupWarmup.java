@@ -0,0 +1,40 @@
+package ru.dsec.phonecountry.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+
+/**
+ * Warms up the lookup path once the local codes are loaded. Application runners complete before
+ * readiness switches to accepting traffic, so the first real requests after a deploy are served
+ * by compiled code.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+@Slf4j
+public class LookupWarmup implements ApplicationRunner {
+
+    private final PhoneCountryService service;
+    private final PhoneCountryConfig config;
+
+    public LookupWarmup(PhoneCountryService service, PhoneCountryConfig config) {
+        this.service = service;
+        this.config = config;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        int iterations = config.getWarmupIterations();
+        if (iterations <= 0) {
+            return;
+        }
+        long start = System.nanoTime();
+        long matches = service.warmUp(iterations);
+        log.info("Warmed up the lookup path with {} lookups ({} matched) in {} ms",
+                iterations, matches, (System.nanoTime() - start) / 1_000_000);
+    }
+}
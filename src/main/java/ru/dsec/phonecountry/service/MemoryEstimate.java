@@ -0,0 +1,63 @@
+package ru.dsec.phonecountry.service;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Rough shallow sizes of heap objects on a 64-bit JVM with compressed references,
+ * enough to report how the lookup index grows with the number of codes.
+ */
+final class MemoryEstimate {
+
+    static final int OBJECT_HEADER = 12;
+    static final int ARRAY_HEADER = 16;
+    static final int REFERENCE = 4;
+
+    private MemoryEstimate() {
+    }
+
+    static long intArray(int length) {
+        return align(ARRAY_HEADER + (long) length * Integer.BYTES);
+    }
+
+    static long byteArray(int length) {
+        return align(ARRAY_HEADER + (long) length);
+    }
+
+    static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long) length * REFERENCE);
+    }
+
+    static long object(int fieldBytes) {
+        return align(OBJECT_HEADER + (long) fieldBytes);
+    }
+
+    /**
+     * @return The size of the string, or 0 if it is null or already counted.
+     */
+    static long string(String value, Set<Object> counted) {
+        if (value == null || !counted.add(value)) {
+            return 0;
+        }
+        // Compact strings: one byte per Latin-1 character, two otherwise; assume the common case
+        return object(REFERENCE + Integer.BYTES + 2) + byteArray(value.length());
+    }
+
+    /**
+     * @return The size of the list and its strings, or 0 if the list is already counted.
+     */
+    static long strings(List<String> values, Set<Object> counted) {
+        if (!counted.add(values)) {
+            return 0;
+        }
+        long bytes = object(REFERENCE) + referenceArray(values.size());
+        for (String value : values) {
+            bytes += string(value, counted);
+        }
+        return bytes;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
@@ -0,0 +1,73 @@
+package ru.dsec.phonecountry.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefixes below the country calling code (NANP area codes, +7 ranges and the like),
+ * kept in a local text file and overlaid on the code table from Wikipedia.
+ * <p>
+ * One prefix per line: the prefix with "+", a tab, and the countries sharing it joined with ", ".
+ * Blank lines and lines starting with "#" are ignored.
+ */
+public final class NumberingPlan {
+
+    private NumberingPlan() {
+    }
+
+    /**
+     * @param in The plan file; not closed.
+     * @return Prefixes with "+" mapped to their countries, in file order.
+     * @throws IOException If the file cannot be read or a line is not a prefix and its countries.
+     */
+    public static Map<String, List<String>> read(InputStream in) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        Map<String, List<String>> prefixes = new LinkedHashMap<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            int tab = line.indexOf('\t');
+            String prefix = tab < 0 ? "" : line.substring(0, tab).trim();
+            String countries = tab < 0 ? "" : line.substring(tab + 1).trim();
+            if (prefix.length() < 2 || prefix.charAt(0) != '+' || !isDigits(prefix, 1) || countries.isEmpty()) {
+                throw new IOException("Malformed numbering plan line " + lineNumber + ": " + line);
+            }
+            prefixes.put(prefix, List.of(countries.split(", ")));
+        }
+        return prefixes;
+    }
+
+    /**
+     * @param base The index built from the code table.
+     * @param plan Prefixes read by {@link #read(InputStream)}.
+     * @return An index with both; plan prefixes replace equal codes of the base index.
+     */
+    public static CountryCodeIndex overlay(CountryCodeIndex base, Map<String, List<String>> plan) {
+        if (plan.isEmpty()) {
+            return base;
+        }
+        CountryCodeIndex.Builder builder = CountryCodeIndex.builder(base.size() + plan.size()).addAll(base);
+        plan.forEach((prefix, countries) -> builder.add(prefix.substring(1), countries));
+        return builder.build();
+    }
+
+    private static boolean isDigits(String value, int from) {
+        for (int i = from; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,175 @@
+package ru.dsec.phonecountry.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Meters for the lookup and refresh paths.
+ * Everything recorded per request is created up front, so recording is a single timer or counter update.
+ */
+@Component
+public class PhoneCountryMetrics {
+
+    static final String OTHER_PREFIX = "other";
+
+    private final MeterRegistry registry;
+    private final int prefixTagLimit;
+
+    private final Timer found;
+    private final Timer notFound;
+    private final Timer invalid;
+    private final Map<String, Counter> prefixHits = new ConcurrentHashMap<>();
+    private final Counter otherPrefixHits;
+
+    private final Timer fetch;
+    private final Timer parse;
+    private final Timer persist;
+    private final DistributionSummary batchSize;
+
+    public PhoneCountryMetrics(MeterRegistry registry, PhoneCountryConfig config) {
+        this.registry = registry;
+        this.prefixTagLimit = config.getMetricsPrefixTagLimit();
+        this.found = lookupTimer("found");
+        this.notFound = lookupTimer("not_found");
+        this.invalid = lookupTimer("invalid");
+        this.otherPrefixHits = prefixCounter(OTHER_PREFIX);
+        this.fetch = phaseTimer("fetch");
+        this.parse = phaseTimer("parse");
+        this.persist = phaseTimer("persist");
+        this.batchSize = DistributionSummary.builder("phone.batch.size")
+                .description("Numbers per batch lookup request")
+                .baseUnit("numbers")
+                .register(registry);
+    }
+
+    /**
+     * Publishes the size of the current index as a gauge.
+     */
+    public <T> void gaugeIndexSize(T source, ToDoubleFunction<T> size) {
+        Gauge.builder("phone.index.size", source, size)
+                .description("Country codes in the published lookup index")
+                .register(registry);
+    }
+
+    /**
+     * Publishes the estimated heap size of the current index as a gauge.
+     */
+    public <T> void gaugeIndexMemory(T source, ToDoubleFunction<T> bytes) {
+        Gauge.builder("phone.index.memory", source, bytes)
+                .description("Estimated heap size of the published lookup index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    public void lookupFound(long startNanos, String prefix) {
+        found.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+        Counter counter = prefixHits.get(prefix);
+        if (counter == null) {
+            counter = prefixHits.size() < prefixTagLimit
+                    ? prefixHits.computeIfAbsent(prefix, p -> prefixCounter("+" + p))
+                    : otherPrefixHits;
+        }
+        counter.increment();
+    }
+
+    public void lookupNotFound(long startNanos) {
+        notFound.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lookupInvalid(long startNanos) {
+        invalid.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void fetched(long startNanos) {
+        fetch.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void parsed(long startNanos) {
+        parse.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void persisted(long startNanos) {
+        persist.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @param outcome One of "updated", "unchanged", "failed", "skipped".
+     */
+    public void refreshed(long startNanos, String outcome) {
+        Timer.builder("phone.refresh")
+                .description("Country code refresh from Wikipedia")
+                .tag("outcome", outcome)
+                .register(registry)
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void batch(int numbers) {
+        batchSize.record(numbers);
+    }
+
+    /**
+     * @param outcome One of "found", "not_found", "invalid".
+     * @return The counter of lookups over the line protocol with that outcome; kept by the caller.
+     */
+    public Counter lineLookups(String outcome) {
+        return Counter.builder("phone.line.lookups")
+                .description("Lookups over the line protocol listener")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Publishes the admission concurrency limit and the requests it currently holds as gauges.
+     */
+    public <T> void gaugeAdmission(T source, ToDoubleFunction<T> limit, ToDoubleFunction<T> inFlight) {
+        Gauge.builder("phone.admission.limit", source, limit)
+                .description("Concurrent lookup API requests currently allowed")
+                .register(registry);
+        Gauge.builder("phone.admission.in_flight", source, inFlight)
+                .description("Lookup API requests currently admitted")
+                .register(registry);
+    }
+
+    /**
+     * @param reason One of "quota", "concurrency".
+     * @return The counter of lookup API requests rejected for that reason; kept by the caller.
+     */
+    public Counter admissionRejected(String reason) {
+        return Counter.builder("phone.admission.rejected")
+                .description("Lookup API requests rejected by admission control")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private Timer lookupTimer(String outcome) {
+        return Timer.builder("phone.lookup")
+                .description("Phone number normalization and country lookup")
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter prefixCounter(String prefix) {
+        return Counter.builder("phone.lookup.prefix")
+                .description("Successful lookups per matched country code")
+                .tag("prefix", prefix)
+                .register(registry);
+    }
+
+    private Timer phaseTimer(String phase) {
+        return Timer.builder("phone.refresh.phase")
+                .description("Country code refresh phases")
+                .tag("phase", phase)
+                .register(registry);
+    }
+}
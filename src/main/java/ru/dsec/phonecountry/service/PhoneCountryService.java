@@ -2,151 +2,544 @@ package ru.dsec.phonecountry.service;
 
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.jsoup.select.Elements;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import ru.dsec.phonecountry.config.PhoneCountryConfig;
 import ru.dsec.phonecountry.exception.CountryNotFoundException;
 import ru.dsec.phonecountry.exception.InvalidPhoneNumberException;
-import ru.dsec.phonecountry.model.CountryCode;
-import ru.dsec.phonecountry.repository.CountryCodeRepository;
+import ru.dsec.phonecountry.repository.CountryCodeStore;
 
 import java.io.IOException;
-import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Service for determining the country by phone number.
- * Loads country codes from Wikipedia and stores them in the database.
+ * Serves lookups from locally stored country codes and refreshes them from Wikipedia in the background.
  */
 @Service
 @Slf4j
 public class PhoneCountryService {
 
-    private static final Pattern SUBCODE_PATTERN = Pattern.compile("\\(([^)]+)\\)");
-    final Map<String, String> countryCodeMap = new HashMap<>();
-    private final CountryCodeRepository repository;
+    private final CountryCodeStore store;
     private final PhoneCountryConfig config;
+    private final TaskExecutor taskExecutor;
+    private final PhoneCountryMetrics metrics;
+    private final LookupEventLog events;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    // Owner of the refresh claim in the database while this instance refreshes, see CountryCodeStore#claimRefresh
+    private final String instanceId = UUID.randomUUID().toString();
+    // Immutable, built off to the side and swapped in one step; readers never lock
+    private final AtomicReference<CountryCodeIndex> index = new AtomicReference<>(CountryCodeIndex.EMPTY);
+    // Overlaid on every published index, read once at startup
+    private volatile Map<String, List<String>> numberingPlan = Map.of();
+    // Of the last successfully stored page, used to skip unchanged downloads; replaced as a whole
+    private volatile PageValidators validators = PageValidators.NONE;
+    private volatile RefreshStatus refreshStatus = RefreshStatus.NEVER;
+    // Of the table contents last seen or written here, see CountryCodeStore#version()
+    private volatile long databaseVersion;
 
-    public PhoneCountryService(CountryCodeRepository repository, PhoneCountryConfig config) {
-        this.repository = repository;
+    private record PageValidators(String etag, String lastModified, String contentHash) {
+        static final PageValidators NONE = new PageValidators(null, null, null);
+    }
+
+    public PhoneCountryService(CountryCodeStore store, PhoneCountryConfig config,
+                               @Qualifier(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+                               TaskExecutor taskExecutor, PhoneCountryMetrics metrics,
+                               LookupEventLog events) {
+        this.store = store;
         this.config = config;
+        this.taskExecutor = taskExecutor;
+        this.metrics = metrics;
+        this.events = events;
+        metrics.gaugeIndexSize(this, service -> service.index().size());
+        metrics.gaugeIndexMemory(this, service -> service.index().estimatedBytes());
     }
 
     /**
-     * Loads country codes from Wikipedia and stores them in the database.
-     * This method runs once after the service is initialized.
+     * Fills the index from local data, without touching the network: the snapshot file written
+     * by the last successful refresh, then the database unless {@link PhoneCountryConfig#isOfflineStartup()},
+     * then the snapshot bundled with the application.
+     * The numbering plan is read first and applies to this and every later index.
+     * Runs during startup, so the application is ready as soon as the context is.
      */
     @PostConstruct
+    public void loadLocalCountryCodes() {
+        numberingPlan = readNumberingPlan(config.getNumberingPlan());
+        CountryCodeIndex local = readSnapshotFile(config.getSnapshotFile());
+        if (local == null && !config.isOfflineStartup()) {
+            local = readDatabase();
+        }
+        if (local == null) {
+            local = readBundledSnapshot(config.getSnapshot());
+        }
+        publishIndex(local != null ? local : CountryCodeIndex.EMPTY);
+    }
+
+    /**
+     * Starts a Wikipedia refresh once the application is up, without delaying readiness; skipped on an offline startup.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void refreshInBackground() {
+        if (config.isOfflineStartup()) {
+            log.info("Offline startup, serving {} local country codes until the scheduled refresh", index().size());
+            return;
+        }
+        taskExecutor.execute(this::loadCountryCodes);
+    }
+
+    /**
+     * Periodically refreshes the country codes, see {@link PhoneCountryConfig#getRefreshInterval()}.
+     */
+    @Scheduled(fixedDelayString = "${phone.country.refresh-interval:PT24H}",
+            initialDelayString = "${phone.country.refresh-interval:PT24H}")
+    public void scheduledRefresh() {
+        loadCountryCodes();
+    }
+
+    /**
+     * Starts a refresh from Wikipedia on the task executor and returns immediately.
+     *
+     * @return {@code false} if a refresh is already in progress or requested, and nothing was started.
+     */
+    public boolean requestRefresh() {
+        // Claimed here rather than by the task, so that concurrent requests cannot both submit one
+        if (!refreshing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            taskExecutor.execute(() -> runRefresh(true));
+        } catch (RuntimeException e) {
+            refreshing.set(false);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * @return The state of the current or last refresh from Wikipedia.
+     */
+    public RefreshStatus refreshStatus() {
+        return refreshStatus;
+    }
+
+    /**
+     * Loads country codes from Wikipedia and stores them in the database.
+     * The stored data and the index are replaced only if the page was fetched and parsed successfully,
+     * and nothing is parsed or written if the page has not changed since the last successful load.
+     * <p>
+     * Of the instances sharing the database only the one that claims the refresh fetches the page and writes,
+     * and it does not refresh if an instance checked Wikipedia within the last half
+     * {@link PhoneCountryConfig#getRefreshInterval() refresh interval}; the others pick the data up with
+     * {@link #syncFromDatabase()}. Nothing changes if the database is unavailable.
+     */
     public void loadCountryCodes() {
+        loadCountryCodes(false);
+    }
+
+    /**
+     * @param force Refresh even if another instance did so recently, as for a refresh requested by an operator.
+     */
+    private void loadCountryCodes(boolean force) {
+        if (!refreshing.compareAndSet(false, true)) {
+            log.info("Country code refresh already in progress, skipping");
+            return;
+        }
+        runRefresh(force);
+    }
+
+    /**
+     * Runs a refresh claimed by the caller and releases the claim when done.
+     */
+    private void runRefresh(boolean force) {
+        long start = System.nanoTime();
+        refreshStatus = refreshStatus.started(Instant.now());
+        String outcome = "failed";
         try {
-            log.info("Starting to load country codes from Wikipedia...");
-            repository.deleteAll();
-            log.info("Cleared the country codes repository");
+            outcome = refreshAsOwner(force);
+        } finally {
+            refreshStatus = refreshStatus.finished(outcome, Instant.now());
+            refreshing.set(false);
+        }
+        metrics.refreshed(start, outcome);
+    }
 
-            Document doc = Jsoup.connect(config.getApiUrl())
+    /**
+     * Reloads the index from the database if another instance has changed the table since it was last
+     * read or written here. Skipped while this instance refreshes from Wikipedia itself.
+     */
+    @Scheduled(fixedDelayString = "${phone.country.sync-interval:PT30S}",
+            initialDelayString = "${phone.country.sync-interval:PT30S}")
+    public void syncFromDatabase() {
+        if (refreshing.get()) {
+            return;
+        }
+        long version;
+        try {
+            version = store.version();
+        } catch (DataAccessException e) {
+            log.warn("Failed to read the country code table version", e);
+            return;
+        }
+        if (version > databaseVersion) {
+            CountryCodeIndex stored = readDatabase();
+            if (stored != null) {
+                publishIndex(stored);
+            }
+        }
+    }
+
+    /**
+     * Claims the refresh in the database before anything is fetched, so that instances started together do not
+     * all download the page, and releases the claim when done.
+     */
+    private String refreshAsOwner(boolean force) {
+        Instant now = Instant.now();
+        try {
+            if (!store.claimRefresh(instanceId, now, now.plus(config.getRefreshLease()))) {
+                log.info("Another instance is refreshing country codes, skipping");
+                return "skipped";
+            }
+        } catch (DataAccessException e) {
+            // Nothing could be stored either; the next refresh tries again
+            log.error("Failed to claim the country code refresh, skipping", e);
+            return "failed";
+        }
+        try {
+            return !force && refreshedRecently() ? "skipped" : refresh();
+        } finally {
+            try {
+                store.releaseRefresh(instanceId);
+            } catch (DataAccessException e) {
+                log.warn("Failed to release the country code refresh, it expires with its lease", e);
+            }
+        }
+    }
+
+    private boolean refreshedRecently() {
+        try {
+            Instant refreshedAt = store.refreshedAt();
+            if (refreshedAt != null
+                    && refreshedAt.plus(config.getRefreshInterval().dividedBy(2)).isAfter(Instant.now())) {
+                log.info("Country codes were refreshed at {} by another instance, skipping", refreshedAt);
+                return true;
+            }
+        } catch (DataAccessException e) {
+            // Nothing could be stored either; the next refresh or sync tries again
+            log.warn("Failed to read when country codes were last refreshed, skipping", e);
+            return true;
+        }
+        return false;
+    }
+
+    private void markRefreshed() {
+        try {
+            store.markRefreshed(Instant.now());
+        } catch (DataAccessException e) {
+            log.warn("Failed to record the refresh in the database", e);
+        }
+    }
+
+    /**
+     * Writes the codes to the database if this instance still holds the refresh claim, which it may have lost
+     * if the refresh outlasted the lease.
+     *
+     * @return "updated" if the codes were written, "skipped" if another instance has taken over the refresh,
+     * "failed" if the database is unavailable.
+     */
+    private String storeCountryCodes(Map<String, String> codes) {
+        Optional<CountryCodeStore.Changes> stored;
+        try {
+            stored = store.whileRefreshOwner(instanceId, Instant.now().plus(config.getRefreshLease()), () -> {
+                CountryCodeStore.Changes changes = store.replaceAll(codes);
+                store.markRefreshed(Instant.now());
+                databaseVersion = store.version();
+                return changes;
+            });
+        } catch (DataAccessException e) {
+            log.error("Failed to store country codes in the database, keeping the current ones", e);
+            return "failed";
+        }
+        if (stored.isEmpty()) {
+            log.info("Another instance has taken over the country code refresh, skipping");
+            return "skipped";
+        }
+        return "updated";
+    }
+
+    /**
+     * The index is only replaced once the codes are stored, so that instances sharing the database serve
+     * the same codes; with the database unavailable the current index is kept until a later refresh.
+     *
+     * @return The refresh outcome for metrics: "updated", "unchanged", "failed" or, see
+     * {@link #storeCountryCodes}, "skipped".
+     */
+    private String refresh() {
+        Connection.Response response;
+        byte[] body;
+        long phaseStart = System.nanoTime();
+        try {
+            log.info("Starting to load country codes from Wikipedia...");
+            Connection connection = Jsoup.connect(config.getApiUrl())
                     .timeout(config.getTimeout())
-                    .get();
+                    .ignoreHttpErrors(true);
+            PageValidators previous = validators;
+            if (previous.etag() != null) {
+                connection.header("If-None-Match", previous.etag());
+            }
+            if (previous.lastModified() != null) {
+                connection.header("If-Modified-Since", previous.lastModified());
+            }
+            response = connection.execute();
+            if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                log.info("Country codes page not modified since the last load");
+                markRefreshed();
+                return "unchanged";
+            }
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                log.error("Failed to load country codes: HTTP {}, keeping the current ones", response.statusCode());
+                return "failed";
+            }
+            body = response.bodyAsBytes();
             log.info("Successfully fetched data from {}", config.getApiUrl());
+        } catch (IOException e) {
+            log.error("Failed to load country codes, keeping the current ones", e);
+            return "failed";
+        } finally {
+            metrics.fetched(phaseStart);
+        }
 
-            Element alphabeticalOrderHeader = doc.getElementById("Alphabetical_order");
-            if (alphabeticalOrderHeader == null) {
-                log.error("Could not find 'Alphabetical order' section");
-                return;
-            }
+        String hash = sha256(body);
+        if (hash.equals(validators.contentHash())) {
+            log.info("Country codes page content unchanged since the last load");
+            rememberValidators(response, hash);
+            markRefreshed();
+            return "unchanged";
+        }
+
+        Map<String, List<String>> codeToCountries;
+        phaseStart = System.nanoTime();
+        try {
+            codeToCountries = WikipediaCountryCodeParser.parse(body);
+        } finally {
+            metrics.parsed(phaseStart);
+        }
+        if (codeToCountries.isEmpty()) {
+            log.error("No country codes parsed, keeping the current ones");
+            return "failed";
+        }
+
+        Map<String, String> codes = new HashMap<>(codeToCountries.size() * 2);
+        CountryCodeIndex.Builder builder = CountryCodeIndex.builder(codeToCountries.size());
+        for (Map.Entry<String, List<String>> entry : codeToCountries.entrySet()) {
+            String code = entry.getKey();
+            codes.put(code, String.join(", ", entry.getValue()));
+            builder.add(code.substring(1), entry.getValue());
+        }
+        log.info("Found {} unique country codes", codes.size());
 
-            Element parent = alphabeticalOrderHeader.parent();
-            Element table = parent != null ? parent.nextElementSibling() : null;
-            while (table != null && !table.tagName().equals("table")) {
-                table = table.nextElementSibling();
+        String outcome;
+        phaseStart = System.nanoTime();
+        try {
+            outcome = storeCountryCodes(codes);
+            if ("updated".equals(outcome)) {
+                log.info("Successfully loaded country codes into the database");
+                writeSnapshotFile(codeToCountries);
             }
+        } finally {
+            metrics.persisted(phaseStart);
+        }
+        // Otherwise validators are kept as they were, so the next refresh fetches the page again
+        if ("updated".equals(outcome)) {
+            publishIndex(builder.build());
+            rememberValidators(response, hash);
+        }
+        return outcome;
+    }
+
+    private void rememberValidators(Connection.Response response, String hash) {
+        validators = new PageValidators(response.header("ETag"), response.header("Last-Modified"), hash);
+    }
 
-            if (table == null || !table.hasClass("wikitable")) {
-                log.error("Could not find the country codes table");
-                return;
+    private static String sha256(byte[] body) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static CountryCodeIndex readSnapshotFile(Path file) {
+        if (file == null || !Files.isRegularFile(file)) {
+            return null;
+        }
+        try {
+            CountryCodeIndex snapshot = CountryCodeSnapshot.read(file);
+            log.info("Loaded {} country codes from snapshot file {}", snapshot.size(), file);
+            return snapshot;
+        } catch (IOException e) {
+            log.error("Failed to read country code snapshot file {}", file, e);
+            return null;
+        }
+    }
+
+    private CountryCodeIndex readDatabase() {
+        try {
+            // Read before the rows: a change in between only causes one more reload.
+            // Recorded even if the table turns out empty or unreadable, so that each sync does not read it again
+            long version = store.version();
+            databaseVersion = version;
+            // Rows go straight into the trie; the Wikipedia table has about 300 codes
+            CountryCodeIndex.Builder builder = CountryCodeIndex.builder(300);
+            int rows = store.readAll((code, countryName) -> builder.add(code.substring(1), countryName));
+            if (rows == 0) {
+                return null;
             }
+            log.info("Loaded {} country codes from the database, version {}", rows, version);
+            return builder.build();
+        } catch (DataAccessException e) {
+            log.error("Failed to read country codes from the database", e);
+            return null;
+        }
+    }
 
-            Map<String, List<String>> codeToCountries = new HashMap<>(250);
-            for (Element row : table.select("tbody > tr")) {
-                Elements cells = row.select("td");
-                if (cells.size() >= 2) {
-                    String countryName = cells.get(0).text().trim();
-                    String codeText = cells.get(1).text().trim();
-
-                    if (!codeText.isEmpty()) {
-                        codeText = codeText.split("\\[")[0].trim(); // Remove references
-                        if (!codeText.startsWith("+")) {
-                            codeText = "+" + codeText;
-                        }
-
-                        // Extract base code and subcodes
-                        String baseCode = codeText.split("\\s+")[0]; // E.g., "+7" or "+599"
-                        Matcher subcodeMatcher = SUBCODE_PATTERN.matcher(codeText);
-                        if (subcodeMatcher.find()) {
-                            String subCodes = subcodeMatcher.group(1); // E.g., "6, 7" or "3, 4, 7"
-                            for (String subCode : subCodes.split(",\\s*")) {
-                                String fullCode = baseCode + subCode.trim();
-                                codeToCountries.computeIfAbsent(fullCode, k -> new ArrayList<>()).add(countryName);
-                            }
-                        } else {
-                            codeToCountries.computeIfAbsent(baseCode, k -> new ArrayList<>()).add(countryName);
-                        }
-                    }
+    private static CountryCodeIndex readBundledSnapshot(Resource snapshot) {
+        if (snapshot == null || !snapshot.exists()) {
+            log.warn("No country code snapshot available, starting with an empty index");
+            return null;
+        }
+        try {
+            CountryCodeIndex bundled;
+            if (snapshot.isFile()) {
+                bundled = CountryCodeSnapshot.read(snapshot.getFile().toPath());
+            } else {
+                try (InputStream in = snapshot.getInputStream()) {
+                    bundled = CountryCodeSnapshot.read(in);
                 }
             }
+            log.info("Loaded {} country codes from snapshot {}", bundled.size(), snapshot.getDescription());
+            return bundled;
+        } catch (IOException e) {
+            log.error("Failed to read country code snapshot {}", snapshot.getDescription(), e);
+            return null;
+        }
+    }
 
-            List<CountryCode> codes = new ArrayList<>(codeToCountries.size());
-            for (Map.Entry<String, List<String>> entry : codeToCountries.entrySet()) {
-                String code = entry.getKey();
-                String combinedCountries = String.join(", ", entry.getValue());
-                CountryCode countryCode = new CountryCode();
-                countryCode.setCode(code);
-                countryCode.setCountryName(combinedCountries);
-                codes.add(countryCode);
-                countryCodeMap.put(code.substring(1), combinedCountries);
-            }
+    private static Map<String, List<String>> readNumberingPlan(Resource plan) {
+        if (plan == null || !plan.exists()) {
+            return Map.of();
+        }
+        try (InputStream in = plan.getInputStream()) {
+            Map<String, List<String>> prefixes = NumberingPlan.read(in);
+            log.info("Loaded {} numbering plan prefixes from {}", prefixes.size(), plan.getDescription());
+            return prefixes;
+        } catch (IOException e) {
+            log.error("Failed to read numbering plan {}, using country codes only", plan.getDescription(), e);
+            return Map.of();
+        }
+    }
 
-            log.info("Found {} unique country codes", codes.size());
-            repository.saveAll(codes);
-            log.info("Successfully loaded country codes into the database");
+    private void writeSnapshotFile(Map<String, List<String>> codeToCountries) {
+        Path file = config.getSnapshotFile();
+        if (file == null) {
+            return;
+        }
+        try {
+            CountryCodeSnapshot.write(codeToCountries, file);
+            log.info("Wrote country code snapshot to {}", file);
         } catch (IOException e) {
-            log.error("Failed to load country codes", e);
+            log.error("Failed to write country code snapshot to {}", file, e);
         }
     }
 
     /**
-     * Cleans a phone number by removing all non-numeric characters.
-     *
-     * @param phoneNumber The input phone number.
-     * @return A string containing only digits.
+     * @return The currently published lookup index.
      */
-    public String cleanPhoneNumber(String phoneNumber) {
-        if (phoneNumber == null || phoneNumber.isBlank()) {
-            log.error("Phone number is null or empty");
-            throw new InvalidPhoneNumberException("Phone number cannot be empty");
-        }
+    public CountryCodeIndex index() {
+        return index.get();
+    }
 
-        // Разрешаем только числа, пробелы, скобки, дефисы и плюс, но плюс должен быть только в начале
-        if (!phoneNumber.matches("\\+?[0-9()\\-\\s]+")) {
-            log.error("Invalid phone number format: {}", phoneNumber);
-            throw new InvalidPhoneNumberException("Phone number contains invalid characters");
-        }
+    /**
+     * Replaces the lookup index in a single step; readers see either the old or the new one, never a mix.
+     * The numbering plan is overlaid first, except on an empty index, where it would answer for a few
+     * ranges only. Every published index gets a higher data version than the one it replaces, also when
+     * several loads publish at once.
+     */
+    void publishIndex(CountryCodeIndex newIndex) {
+        CountryCodeIndex overlaid = newIndex.size() == 0 ? newIndex : NumberingPlan.overlay(newIndex, numberingPlan);
+        // Based on the wall clock, so versions keep increasing across restarts and old ETags never match
+        CountryCodeIndex published = index.updateAndGet(current ->
+                overlaid.withVersion(Math.max(current.version() + 1, System.currentTimeMillis())));
+        log.info("Published country code index with {} codes, {} trie nodes, ~{} KiB, version {}",
+                overlaid.size(), overlaid.nodeCount(), overlaid.estimatedBytes() / 1024, published.version());
+    }
 
-        // Удаляем все символы, кроме цифр и "+"
-        String cleanedNumber = phoneNumber.replaceAll("[^\\d+]", "");
+    /**
+     * Runs the normalize and lookup path on numbers made from the published codes, so the JIT has
+     * compiled it before real traffic arrives. Nothing is recorded in metrics or the event log.
+     *
+     * @param iterations The number of lookups to run.
+     * @return The number of lookups that matched a code.
+     */
+    public long warmUp(int iterations) {
+        CountryCodeIndex current = index.get();
+        String[] numbers = warmUpNumbers(current);
+        long matches = 0;
+        for (int i = 0; i < iterations; i++) {
+            long packed = PhoneNumberNormalizer.pack(numbers[i % numbers.length]);
+            if (PhoneNumberNormalizer.isValid(packed) && current.match(packed) != CountryCodeIndex.NO_MATCH) {
+                matches++;
+            }
+        }
+        return matches;
+    }
 
-        // Проверяем длину номера (7-15 цифр по E.164)
-        String digitsOnly = cleanedNumber.replace("+", "");
-        if (digitsOnly.length() < 7 || digitsOnly.length() > 15) {
-            log.error("Phone number length out of bounds: {}", cleanedNumber);
-            throw new InvalidPhoneNumberException("Phone number length must be between 7 and 15 digits");
+    // Every code in the usual formats, plus numbers that fail validation or match nothing
+    private static String[] warmUpNumbers(CountryCodeIndex index) {
+        List<String> numbers = new ArrayList<>(index.size() * 2 + 3);
+        for (int i = 0; i < index.size(); i++) {
+            String prefix = index.prefix(i);
+            numbers.add("+" + prefix + " (495) 123-45-67");
+            numbers.add(prefix + "4951234567");
         }
+        numbers.add("+999 123 4567");
+        numbers.add("abc-xyz");
+        numbers.add("+123");
+        return numbers.toArray(new String[0]);
+    }
 
-        log.debug("Cleaned phone number: {} -> {}", phoneNumber, cleanedNumber);
-        return cleanedNumber;
+    /**
+     * Cleans a phone number by removing all non-numeric characters.
+     *
+     * @param phoneNumber The input phone number.
+     * @return A string containing only digits, with the leading "+" kept if present.
+     */
+    public String cleanPhoneNumber(String phoneNumber) {
+        long packed = normalize(phoneNumber);
+        return PhoneNumberNormalizer.toString(packed, phoneNumber.charAt(0) == '+');
     }
 
     /**
@@ -158,25 +551,77 @@ public class PhoneCountryService {
      * @throws CountryNotFoundException    If the country cannot be determined.
      */
     public String determineCountry(String phoneNumber) {
-        log.debug("Determining country for phone number: {}", phoneNumber);
-        String cleanNumber = cleanPhoneNumber(phoneNumber);
+        LookupResult result = lookup(phoneNumber);
+        if (result instanceof LookupResult.Found found) {
+            return found.country();
+        }
+        if (result instanceof LookupResult.Invalid invalid) {
+            throw new InvalidPhoneNumberException(invalid.message());
+        }
+        throw new CountryNotFoundException(((LookupResult.NotFound) result).message());
+    }
 
-        if (cleanNumber.isEmpty()) {
-            log.error("Invalid phone number provided: {}", phoneNumber);
-            throw new InvalidPhoneNumberException("Invalid phone number format");
+    /**
+     * Determines the country corresponding to the given phone number without throwing
+     * for invalid or unknown numbers.
+     *
+     * @param phoneNumber The phone number to analyze.
+     * @return The matched code and country, or why there is none.
+     */
+    public LookupResult lookup(String phoneNumber) {
+        long start = System.nanoTime();
+        long packed = PhoneNumberNormalizer.pack(phoneNumber);
+        if (!PhoneNumberNormalizer.isValid(packed)) {
+            metrics.lookupInvalid(start);
+            events.invalid(phoneNumber);
+            return new LookupResult.Invalid(PhoneNumberNormalizer.errorMessage(packed));
         }
 
-        Optional<String> bestMatch = countryCodeMap.entrySet().stream()
-                .filter(entry -> cleanNumber.startsWith(entry.getKey()) || cleanNumber.startsWith("+" + entry.getKey()))
-                .max(Comparator.comparingInt(entry -> entry.getKey().length()))
-                .map(Map.Entry::getValue);
+        CountryCodeIndex current = index.get();
+        int match = current.match(packed);
+        if (match != CountryCodeIndex.NO_MATCH) {
+            CountryCodeEntry entry = current.entry(match);
+            metrics.lookupFound(start, entry.prefix());
+            events.found(phoneNumber, entry.country());
+            return new LookupResult.Found(entry, current.version());
+        }
 
-        if (bestMatch.isPresent()) {
-            log.info("Found country {} for phone number {}", bestMatch.get(), phoneNumber);
-            return bestMatch.get();
+        metrics.lookupNotFound(start);
+        events.notFound(phoneNumber);
+        return new LookupResult.NotFound(phoneNumber, current.version());
+    }
+
+    /**
+     * Suggests the country while a number is being typed, from the digits entered so far.
+     * Not counted as a lookup.
+     *
+     * @param partial The beginning of a phone number, possibly empty.
+     * @return The current match and the countries still possible, or why the input cannot be a phone number.
+     */
+    public TypeaheadResult typeahead(String partial) {
+        String digits = PhoneNumberNormalizer.partialDigits(partial);
+        if (digits == null) {
+            return new TypeaheadResult.Invalid(PhoneNumberNormalizer.errorMessage(PhoneNumberNormalizer.INVALID_CHARACTERS));
+        }
+        if (digits.length() > PhoneNumberNormalizer.MAX_DIGITS) {
+            return new TypeaheadResult.Invalid(PhoneNumberNormalizer.errorMessage(PhoneNumberNormalizer.INVALID_LENGTH));
         }
+        CountryCodeIndex current = index.get();
+        return new TypeaheadResult.Suggested(current.suggest(digits), current.version());
+    }
 
-        log.error("Country not found for phone number: {}", phoneNumber);
-        throw new CountryNotFoundException("Country not found for phone number: " + phoneNumber);
+    /**
+     * Validates a phone number and packs its digits without creating intermediate strings.
+     *
+     * @param phoneNumber The input phone number.
+     * @return The packed digits, see {@link PhoneNumberNormalizer}.
+     * @throws InvalidPhoneNumberException If the phone number is empty or invalid.
+     */
+    long normalize(String phoneNumber) {
+        long packed = PhoneNumberNormalizer.pack(phoneNumber);
+        if (!PhoneNumberNormalizer.isValid(packed)) {
+            throw new InvalidPhoneNumberException(PhoneNumberNormalizer.errorMessage(packed));
+        }
+        return packed;
     }
 }
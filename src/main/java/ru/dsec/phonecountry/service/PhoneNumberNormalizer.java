@@ -0,0 +1,199 @@
+package ru.dsec.phonecountry.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Single-pass validator and normalizer for raw phone numbers.
+ * <p>
+ * Accepts the same input as {@code \+?[0-9()\-\s]+}: an optional leading "+" followed by
+ * digits, parentheses, hyphens and whitespace. The digits are packed into one {@code long}:
+ * the low 4 bits hold the digit count and digit {@code i} occupies bits {@code 4 + 4 * i}.
+ * Fifteen E.164 digits fit exactly, so the happy path creates no objects at all.
+ * <p>
+ * A valid number always has 7 to 15 digits, so smaller counts in the low nibble are used
+ * as error codes; check {@link #isValid(long)} before reading digits.
+ */
+public final class PhoneNumberNormalizer {
+
+    public static final int MIN_DIGITS = 7;
+    public static final int MAX_DIGITS = 15;
+
+    public static final long EMPTY = 1;
+    public static final long INVALID_CHARACTERS = 2;
+    public static final long INVALID_LENGTH = 3;
+
+    private static final int LENGTH_BITS = 4;
+    private static final long LENGTH_MASK = 0xF;
+
+    private PhoneNumberNormalizer() {
+    }
+
+    /**
+     * Validates and packs a phone number.
+     *
+     * @param phoneNumber The raw phone number.
+     * @return The packed digits, or one of {@link #EMPTY}, {@link #INVALID_CHARACTERS},
+     * {@link #INVALID_LENGTH}.
+     */
+    public static long pack(String phoneNumber) {
+        if (phoneNumber == null || phoneNumber.isBlank()) {
+            return EMPTY;
+        }
+
+        int length = phoneNumber.length();
+        int i = phoneNumber.charAt(0) == '+' ? 1 : 0;
+        if (i == length) {
+            return INVALID_CHARACTERS;
+        }
+
+        long packed = 0;
+        int digits = 0;
+        for (; i < length; i++) {
+            char c = phoneNumber.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (digits < MAX_DIGITS) {
+                    packed |= (long) (c - '0') << (LENGTH_BITS + LENGTH_BITS * digits);
+                }
+                digits++;
+            } else if (!isSeparator(c)) {
+                return INVALID_CHARACTERS;
+            }
+        }
+
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS) {
+            return INVALID_LENGTH;
+        }
+        return packed | digits;
+    }
+
+    /**
+     * Validates and packs a phone number received as ASCII bytes, with the same rules as {@link #pack(String)};
+     * other bytes are invalid characters. Reads with absolute gets, so the buffer is left as it was.
+     *
+     * @param buffer Holds the number at {@code [from, to)}.
+     * @return The packed digits, or one of {@link #EMPTY}, {@link #INVALID_CHARACTERS},
+     * {@link #INVALID_LENGTH}.
+     */
+    public static long pack(ByteBuffer buffer, int from, int to) {
+        int start = from;
+        while (start < to && Character.isWhitespace(buffer.get(start) & 0xFF)) {
+            start++;
+        }
+        if (start == to) {
+            return EMPTY;
+        }
+
+        int i = buffer.get(from) == '+' ? from + 1 : from;
+        if (i == to) {
+            return INVALID_CHARACTERS;
+        }
+
+        long packed = 0;
+        int digits = 0;
+        for (; i < to; i++) {
+            char c = (char) (buffer.get(i) & 0xFF);
+            if (c >= '0' && c <= '9') {
+                if (digits < MAX_DIGITS) {
+                    packed |= (long) (c - '0') << (LENGTH_BITS + LENGTH_BITS * digits);
+                }
+                digits++;
+            } else if (!isSeparator(c)) {
+                return INVALID_CHARACTERS;
+            }
+        }
+
+        if (digits < MIN_DIGITS || digits > MAX_DIGITS) {
+            return INVALID_LENGTH;
+        }
+        return packed | digits;
+    }
+
+    /**
+     * Checks the beginning of a phone number as it is being typed: the same characters as
+     * {@link #pack(String)}, but any number of digits, none included.
+     *
+     * @param partial The input so far; {@code null} is treated as empty.
+     * @return The digits typed so far, or {@code null} if the input contains invalid characters.
+     */
+    public static String partialDigits(String partial) {
+        if (partial == null) {
+            return "";
+        }
+        int length = partial.length();
+        int i = length > 0 && partial.charAt(0) == '+' ? 1 : 0;
+        StringBuilder digits = new StringBuilder(length);
+        for (; i < length; i++) {
+            char c = partial.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            } else if (!isSeparator(c)) {
+                return null;
+            }
+        }
+        return digits.toString();
+    }
+
+    /**
+     * @param packed A value returned by {@link #pack(String)}.
+     * @return {@code true} if it holds digits rather than an error code.
+     */
+    public static boolean isValid(long packed) {
+        return length(packed) >= MIN_DIGITS;
+    }
+
+    /**
+     * @param packed A valid packed number.
+     * @return The number of digits.
+     */
+    public static int length(long packed) {
+        return (int) (packed & LENGTH_MASK);
+    }
+
+    /**
+     * @param packed A valid packed number.
+     * @param index  The digit position, starting at 0.
+     * @return The digit value, 0 to 9.
+     */
+    public static int digitAt(long packed, int index) {
+        return (int) (packed >>> (LENGTH_BITS + LENGTH_BITS * index)) & 0xF;
+    }
+
+    /**
+     * @param packed An error code returned by {@link #pack(String)}.
+     * @return The user-facing message for that error.
+     */
+    public static String errorMessage(long packed) {
+        if (packed == EMPTY) {
+            return "Phone number cannot be empty";
+        }
+        if (packed == INVALID_CHARACTERS) {
+            return "Phone number contains invalid characters";
+        }
+        return "Phone number length must be between 7 and 15 digits";
+    }
+
+    /**
+     * Materializes the packed digits as a string. Only needed off the lookup path.
+     *
+     * @param packed   A valid packed number.
+     * @param withPlus Whether to prepend "+".
+     * @return The digits as a string.
+     */
+    public static String toString(long packed, boolean withPlus) {
+        int length = length(packed);
+        StringBuilder sb = new StringBuilder(length + 1);
+        if (withPlus) {
+            sb.append('+');
+        }
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('0' + digitAt(packed, i)));
+        }
+        return sb.toString();
+    }
+
+    // Same set as [()\-\s] in java.util.regex
+    private static boolean isSeparator(char c) {
+        return c == '(' || c == ')' || c == '-'
+                || c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,84 @@
+package ru.dsec.phonecountry.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Typeahead answer for the digits typed so far: the code that matches them now and the countries
+ * the number can still end up in. It only depends on where the digits lead in the index, so one
+ * instance with its JSON body is computed per trie node and shared by every input that leads there.
+ */
+public final class PrefixSuggestion {
+
+    private final String key;
+    private final String matchedPrefix;
+    private final String country;
+    private final List<String> possible;
+    private final boolean complete;
+    private final byte[] json;
+
+    PrefixSuggestion(String key, CountryCodeEntry match, Collection<String> possible, boolean complete) {
+        this.key = key;
+        this.matchedPrefix = match != null ? match.prefix() : null;
+        this.country = match != null ? match.country() : null;
+        this.possible = List.copyOf(possible);
+        this.complete = complete;
+        this.json = encode(matchedPrefix, country, this.possible, complete);
+    }
+
+    /**
+     * @return What identifies this answer within one index version: the digits of the trie node with
+     * a trailing "*" while more digits can change it, otherwise the matched code, empty if none matches.
+     */
+    public String key() {
+        return key;
+    }
+
+    /**
+     * @return The longest code matching the digits so far, without "+", or {@code null}.
+     */
+    public String matchedPrefix() {
+        return matchedPrefix;
+    }
+
+    /**
+     * @return The countries of the matched code joined with ", ", or {@code null}.
+     */
+    public String country() {
+        return country;
+    }
+
+    /**
+     * @return Every country the number can still belong to, sorted; empty if none.
+     */
+    public List<String> possible() {
+        return possible;
+    }
+
+    /**
+     * @return {@code true} if no further digit can change the answer.
+     */
+    public boolean complete() {
+        return complete;
+    }
+
+    /**
+     * @return The JSON response body; shared, must not be modified.
+     */
+    public byte[] json() {
+        return json;
+    }
+
+    private static byte[] encode(String matchedPrefix, String country, List<String> possible, boolean complete) {
+        StringBuilder json = new StringBuilder(64 + possible.size() * 16);
+        json.append("{\"matchedPrefix\":");
+        CountryCodeEntry.appendString(json, matchedPrefix);
+        json.append(",\"country\":");
+        CountryCodeEntry.appendString(json, country);
+        json.append(",\"possible\":");
+        CountryCodeEntry.appendArray(json, possible);
+        json.append(",\"complete\":").append(complete).append('}');
+        return json.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
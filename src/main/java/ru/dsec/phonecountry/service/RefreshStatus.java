@@ -0,0 +1,26 @@
+package ru.dsec.phonecountry.service;
+
+import java.time.Instant;
+
+/**
+ * State of the refresh from Wikipedia, replaced as a whole whenever a refresh starts or ends.
+ *
+ * @param running      Whether a refresh is in progress.
+ * @param lastOutcome  "updated", "unchanged" or "failed"; {@code null} before the first refresh ends.
+ * @param lastStarted  When the last refresh started.
+ * @param lastFinished When the last refresh ended, whatever its outcome.
+ * @param lastUpdated  When a refresh last replaced the index; {@code null} if none did since startup.
+ */
+public record RefreshStatus(boolean running, String lastOutcome, Instant lastStarted, Instant lastFinished,
+                            Instant lastUpdated) {
+
+    static final RefreshStatus NEVER = new RefreshStatus(false, null, null, null, null);
+
+    RefreshStatus started(Instant at) {
+        return new RefreshStatus(true, lastOutcome, at, lastFinished, lastUpdated);
+    }
+
+    RefreshStatus finished(String outcome, Instant at) {
+        return new RefreshStatus(false, outcome, lastStarted, at, "updated".equals(outcome) ? at : lastUpdated);
+    }
+}
@@ -0,0 +1,20 @@
+package ru.dsec.phonecountry.service;
+
+/**
+ * Outcome of a typeahead request, see {@link PhoneCountryService#typeahead(String)}.
+ */
+public sealed interface TypeaheadResult {
+
+    /**
+     * @param suggestion The shared answer for the digits typed so far.
+     * @param version    The data version of the index that answered.
+     */
+    record Suggested(PrefixSuggestion suggestion, long version) implements TypeaheadResult {
+    }
+
+    /**
+     * @param message Why the input cannot be the beginning of a phone number.
+     */
+    record Invalid(String message) implements TypeaheadResult {
+    }
+}
@@ -0,0 +1,372 @@
+package ru.dsec.phonecountry.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.jsoup.nodes.Entities;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Extracts country codes from the Wikipedia "List of telephone country codes" page.
+ * <p>
+ * {@link #parse(byte[])} scans the raw page: it skips to the "Alphabetical order" table, reads the text
+ * of its cells and stops at the end of the table, without building a document tree.
+ * It gives the same result as reading the table from a Jsoup document (the tests and the parser
+ * benchmark keep such a reader as the reference), except that a table nested in a cell is read as
+ * part of that cell's text rather than as cells of the row.
+ */
+@Slf4j
+public final class WikipediaCountryCodeParser {
+
+    private static final Pattern SUBCODE_PATTERN = Pattern.compile("\\(([^)]+)\\)");
+    private static final Pattern SUBCODE_SEPARATOR = Pattern.compile(",\\s*");
+
+    private static final byte[] SECTION_ID = "id=\"Alphabetical_order\"".getBytes(StandardCharsets.US_ASCII);
+
+    // Elements whose boundaries separate words in Element.text(), and so in cell text here
+    private static final Set<String> BLOCK_TAGS = Set.of(
+            "address", "article", "aside", "blockquote", "br", "caption", "dd", "div", "dl", "dt", "figcaption",
+            "figure", "footer", "h1", "h2", "h3", "h4", "h5", "h6", "header", "hr", "li", "ol", "p", "pre",
+            "section", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul");
+
+    private WikipediaCountryCodeParser() {
+    }
+
+    /**
+     * Parses the "Alphabetical order" table straight from the page bytes, reading nothing past the table.
+     *
+     * @param html The fetched page, UTF-8 encoded.
+     * @return Codes with "+" (e.g. "+7", "+5997") mapped to countries in table order;
+     * empty if the table cannot be found.
+     */
+    public static Map<String, List<String>> parse(byte[] html) {
+        int section = indexOf(html, SECTION_ID, 0);
+        if (section < 0) {
+            log.error("Could not find 'Alphabetical order' section");
+            return Map.of();
+        }
+
+        HtmlScanner scanner = new HtmlScanner(html, section);
+        while (scanner.next() && !(scanner.start && scanner.name.equals("table"))) {
+            // Skip the rest of the heading and any paragraphs up to the table
+        }
+        if (scanner.name == null || !scanner.start || !hasClass(scanner.attribute("class"), "wikitable")) {
+            log.error("Could not find the country codes table");
+            return Map.of();
+        }
+
+        Map<String, List<String>> codeToCountries = new HashMap<>(250);
+        List<String> cells = new ArrayList<>(2);
+        StringBuilder cell = new StringBuilder(64);
+        boolean inCell = false;
+        int depth = 1;
+        while (scanner.next()) {
+            if (inCell) {
+                appendText(cell, html, scanner.textStart, scanner.textEnd);
+            }
+            String name = scanner.name;
+            if (name.equals("table")) {
+                depth += scanner.start ? 1 : -1;
+                if (depth == 0) {
+                    break;
+                }
+            }
+            if (depth > 1) {
+                if (inCell && BLOCK_TAGS.contains(name)) {
+                    appendSpace(cell);
+                }
+                continue;
+            }
+            switch (name) {
+                case "tr", "tbody", "thead", "tfoot" -> {
+                    if (inCell) {
+                        cells.add(cellText(cell));
+                        inCell = false;
+                    }
+                    addRow(codeToCountries, cells);
+                }
+                case "td", "th" -> {
+                    if (inCell) {
+                        cells.add(cellText(cell));
+                    }
+                    // Header cells are not data; like the DOM parser, only td cells count
+                    inCell = scanner.start && name.equals("td");
+                    cell.setLength(0);
+                }
+                default -> {
+                    if (inCell && BLOCK_TAGS.contains(name)) {
+                        appendSpace(cell);
+                    }
+                }
+            }
+        }
+        if (inCell) {
+            cells.add(cellText(cell));
+        }
+        addRow(codeToCountries, cells);
+        return codeToCountries;
+    }
+
+    private static void addRow(Map<String, List<String>> codeToCountries, List<String> cells) {
+        if (cells.size() >= 2) {
+            addRow(codeToCountries, cells.get(0), cells.get(1));
+        }
+        cells.clear();
+    }
+
+    /**
+     * Adds one table row: the country in the first cell, its code with any subcodes in the second.
+     */
+    static void addRow(Map<String, List<String>> codeToCountries, String countryName, String codeText) {
+        if (codeText.isEmpty()) {
+            return;
+        }
+        int reference = codeText.indexOf('[');
+        if (reference >= 0) {
+            codeText = codeText.substring(0, reference).trim(); // Remove references
+        }
+        if (!codeText.startsWith("+")) {
+            codeText = "+" + codeText;
+        }
+
+        // Extract base code and subcodes
+        String baseCode = firstWord(codeText); // E.g., "+7" or "+599"
+        Matcher subcodeMatcher = SUBCODE_PATTERN.matcher(codeText);
+        if (subcodeMatcher.find()) {
+            String subCodes = subcodeMatcher.group(1); // E.g., "6, 7" or "3, 4, 7"
+            for (String subCode : SUBCODE_SEPARATOR.split(subCodes)) {
+                String fullCode = baseCode + subCode.trim();
+                codeToCountries.computeIfAbsent(fullCode, k -> new ArrayList<>()).add(countryName);
+            }
+        } else {
+            codeToCountries.computeIfAbsent(baseCode, k -> new ArrayList<>()).add(countryName);
+        }
+    }
+
+    private static String firstWord(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r') {
+                return text.substring(0, i);
+            }
+        }
+        return text;
+    }
+
+    // Decodes entities and collapses whitespace the way Element.text() does
+    private static void appendText(StringBuilder cell, byte[] html, int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        String text = new String(html, from, to - from, StandardCharsets.UTF_8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '&') {
+                int end = text.indexOf(';', i);
+                String decoded = end > i + 1 ? decodeEntity(text.substring(i + 1, end)) : null;
+                if (decoded != null) {
+                    for (int j = 0; j < decoded.length(); j++) {
+                        appendChar(cell, decoded.charAt(j));
+                    }
+                    i = end;
+                    continue;
+                }
+            }
+            appendChar(cell, c);
+        }
+    }
+
+    private static void appendChar(StringBuilder cell, char c) {
+        if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0') {
+            appendSpace(cell);
+        } else if (c != '\u200B' && c != '\u00AD') {
+            cell.append(c);
+        }
+    }
+
+    private static void appendSpace(StringBuilder cell) {
+        if (cell.length() > 0 && cell.charAt(cell.length() - 1) != ' ') {
+            cell.append(' ');
+        }
+    }
+
+    private static String cellText(StringBuilder cell) {
+        int length = cell.length();
+        return length > 0 && cell.charAt(length - 1) == ' ' ? cell.substring(0, length - 1) : cell.toString();
+    }
+
+    private static String decodeEntity(String entity) {
+        if (entity.startsWith("#")) {
+            try {
+                boolean hex = entity.length() > 1 && (entity.charAt(1) == 'x' || entity.charAt(1) == 'X');
+                int codePoint = Integer.parseInt(entity.substring(hex ? 2 : 1), hex ? 16 : 10);
+                return Character.isValidCodePoint(codePoint) ? new String(Character.toChars(codePoint)) : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        String named = Entities.getByName(entity);
+        return named.isEmpty() ? null : named;
+    }
+
+    private static boolean hasClass(String classes, String wanted) {
+        if (classes == null) {
+            return false;
+        }
+        for (String name : classes.trim().split("\\s+")) {
+            if (name.equals(wanted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOf(byte[] data, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= data.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (data[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Steps through the tags of a page. After each {@link #next()}, {@link #name} is the lowercase tag name,
+     * {@link #start} tells a start tag from an end tag, and the text before the tag spans
+     * {@link #textStart} to {@link #textEnd}. Comments and doctypes are reported as {@link #COMMENT},
+     * the content of script and style elements is skipped.
+     */
+    private static final class HtmlScanner {
+
+        static final String COMMENT = "#comment";
+
+        private final byte[] html;
+        private int position;
+
+        String name;
+        boolean start;
+        int textStart;
+        int textEnd;
+        private int attributesStart;
+        private int attributesEnd;
+
+        HtmlScanner(byte[] html, int position) {
+            this.html = html;
+            this.position = position;
+        }
+
+        boolean next() {
+            textStart = position;
+            while (true) {
+                int open = indexOfByte(html, (byte) '<', position);
+                if (open < 0 || open + 1 >= html.length) {
+                    name = null;
+                    position = html.length;
+                    textEnd = html.length;
+                    return false;
+                }
+                textEnd = open;
+                byte first = html[open + 1];
+                if (first == '!' || first == '?') {
+                    // Comment, doctype or processing instruction: ends the text, but is no element
+                    position = startsWith(html, open, "<!--") ? skipPast(open + 4, "-->") : skipPast(open, ">");
+                    name = COMMENT;
+                    start = false;
+                    return true;
+                }
+                start = first != '/';
+                int nameStart = start ? open + 1 : open + 2;
+                int nameEnd = nameStart;
+                while (nameEnd < html.length && isNameByte(html[nameEnd])) {
+                    nameEnd++;
+                }
+                if (nameEnd == nameStart) {
+                    // A lone "<" is text
+                    position = open + 1;
+                    continue;
+                }
+                name = new String(html, nameStart, nameEnd - nameStart, StandardCharsets.US_ASCII)
+                        .toLowerCase(Locale.ROOT);
+                attributesStart = nameEnd;
+                position = tagEnd(nameEnd);
+                attributesEnd = position - 1;
+                if (start && (name.equals("script") || name.equals("style"))) {
+                    position = skipPast(position, "</" + name);
+                    position = skipPast(position, ">");
+                }
+                return true;
+            }
+        }
+
+        String attribute(String attribute) {
+            String attributes = new String(html, attributesStart, Math.max(attributesEnd - attributesStart, 0),
+                    StandardCharsets.UTF_8);
+            Matcher matcher = Pattern.compile("(?i)(?:^|\\s)" + Pattern.quote(attribute)
+                    + "\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s>]+))").matcher(attributes);
+            if (!matcher.find()) {
+                return null;
+            }
+            return matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+        }
+
+        // Position after the ">" closing the tag, ignoring ">" inside quoted attribute values
+        private int tagEnd(int from) {
+            byte quote = 0;
+            for (int i = from; i < html.length; i++) {
+                byte b = html[i];
+                if (quote != 0) {
+                    if (b == quote) {
+                        quote = 0;
+                    }
+                } else if (b == '"' || b == '\'') {
+                    quote = b;
+                } else if (b == '>') {
+                    return i + 1;
+                }
+            }
+            return html.length;
+        }
+
+        private int skipPast(int from, String marker) {
+            int found = indexOf(html, marker.getBytes(StandardCharsets.US_ASCII), from);
+            return found < 0 ? html.length : found + marker.length();
+        }
+
+        private static boolean isNameByte(byte b) {
+            return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') || (b >= '0' && b <= '9');
+        }
+
+        private static int indexOfByte(byte[] data, byte b, int from) {
+            for (int i = from; i < data.length; i++) {
+                if (data[i] == b) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean startsWith(byte[] data, int at, String prefix) {
+            if (at + prefix.length() > data.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (data[at + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
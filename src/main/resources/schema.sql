@@ -0,0 +1,28 @@
+-- Country code table, owned by this script rather than by Hibernate; safe to run on every start.
+CREATE TABLE IF NOT EXISTS country_code (
+    id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    code VARCHAR(255) NOT NULL,
+    country_name VARCHAR(255)
+);
+
+-- Tables created by older versions may hold the same code twice; keep the first row before indexing
+DELETE FROM country_code c
+WHERE EXISTS (SELECT 1 FROM country_code d WHERE d.code = c.code AND d.id < c.id);
+
+CREATE UNIQUE INDEX IF NOT EXISTS country_code_code_key ON country_code (code);
+
+-- One row, bumped in the same transaction as every change of country_code, so other instances
+-- know when to reload; refreshed_at is when any instance last checked Wikipedia successfully
+CREATE TABLE IF NOT EXISTS country_code_version (
+    id INT PRIMARY KEY,
+    version BIGINT NOT NULL,
+    refreshed_at TIMESTAMP WITH TIME ZONE
+);
+
+INSERT INTO country_code_version (id, version)
+SELECT 1, 0 WHERE NOT EXISTS (SELECT 1 FROM country_code_version WHERE id = 1);
+
+-- The instance refreshing from Wikipedia and until when its claim holds; claimed with a conditional update,
+-- so only one of the instances sharing the database fetches the page, and expired if that instance dies
+ALTER TABLE country_code_version ADD COLUMN IF NOT EXISTS refresh_owner VARCHAR(64);
+ALTER TABLE country_code_version ADD COLUMN IF NOT EXISTS refresh_lease_until TIMESTAMP WITH TIME ZONE;
@@ -8,13 +8,11 @@ async function detectCountry() {
     }
 
     try {
-        const response = await fetch('/api/phone/country', {
-            method: 'POST',
+        // GET, so repeat lookups are answered from the browser cache or with 304 Not Modified
+        const response = await fetch(`/api/phone/country/${encodeURIComponent(phoneNumber)}`, {
             headers: {
-                'Content-Type': 'application/json',  // Изменяем на JSON
                 'Accept': 'application/json'         // Указываем, что ждем JSON
-            },
-            body: JSON.stringify({ phoneNumber })    // Отправляем объект как JSON
+            }
         });
 
         const data = await response.json();          // Парсим JSON-ответ
@@ -36,6 +34,92 @@ function showResult(message, isSuccess) {
     resultDiv.className = `result ${isSuccess ? 'success' : 'error'}`;
 }
 
+// Typeahead: asks the server only once typing pauses, and never twice for the same digits
+const TYPEAHEAD_DELAY_MS = 150;
+const typeaheadCache = new Map();                     // digits -> answer of /api/phone/typeahead
+let typeaheadTimer;
+let typeaheadRequest;
+
+function typeaheadDigits(value) {
+    const trimmed = value.trim();
+    if (!/^\+?[0-9()\-\s]*$/.test(trimmed)) {
+        return null;                                  // The server would reject it too
+    }
+    return trimmed.replace(/\D/g, '');
+}
+
+// An answer marked complete also holds for any longer number starting with the same digits
+function cachedSuggestion(digits) {
+    if (typeaheadCache.has(digits)) {
+        return typeaheadCache.get(digits);
+    }
+    for (let length = digits.length - 1; length >= 0; length--) {
+        const shorter = typeaheadCache.get(digits.substring(0, length));
+        if (shorter && shorter.complete) {
+            return shorter;
+        }
+    }
+    return undefined;
+}
+
+function showSuggestion(suggestion) {
+    const suggestionDiv = document.getElementById('suggestion');
+    if (!suggestion) {
+        suggestionDiv.textContent = '';
+        return;
+    }
+    if (suggestion.complete) {
+        suggestionDiv.textContent = suggestion.country ? `+${suggestion.matchedPrefix}: ${suggestion.country}` : 'No matching country code';
+    } else if (suggestion.possible.length > 0) {
+        const current = suggestion.country ? `+${suggestion.matchedPrefix}: ${suggestion.country}. ` : '';
+        const shown = suggestion.possible.slice(0, 5).join(', ');
+        const more = suggestion.possible.length > 5 ? ` and ${suggestion.possible.length - 5} more` : '';
+        suggestionDiv.textContent = `${current}Possible: ${shown}${more}`;
+    } else {
+        suggestionDiv.textContent = '';
+    }
+}
+
+async function fetchSuggestion(digits) {
+    if (typeaheadRequest) {
+        typeaheadRequest.abort();                     // Only the latest input matters
+    }
+    typeaheadRequest = new AbortController();
+    try {
+        const response = await fetch(`/api/phone/typeahead?number=${digits}`, {
+            headers: { 'Accept': 'application/json' },
+            signal: typeaheadRequest.signal
+        });
+        if (!response.ok) {
+            return;
+        }
+        const suggestion = await response.json();
+        typeaheadCache.set(digits, suggestion);
+        if (typeaheadDigits(document.getElementById('phoneNumber').value) === digits) {
+            showSuggestion(suggestion);
+        }
+    } catch (error) {
+        if (error.name !== 'AbortError') {
+            console.error('Error:', error);
+        }
+    }
+}
+
+document.getElementById('phoneNumber').addEventListener('input', function(e) {
+    clearTimeout(typeaheadTimer);
+    const digits = typeaheadDigits(e.target.value);
+    if (!digits) {
+        showSuggestion(undefined);
+        return;
+    }
+    const cached = cachedSuggestion(digits);
+    if (cached) {
+        showSuggestion(cached);
+        return;
+    }
+    typeaheadTimer = setTimeout(() => fetchSuggestion(digits), TYPEAHEAD_DELAY_MS);
+});
+
 document.getElementById('phoneNumber').addEventListener('keypress', function(e) {
     if (e.key === 'Enter') {
         detectCountry();
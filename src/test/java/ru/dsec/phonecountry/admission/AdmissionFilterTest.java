@@ -0,0 +1,85 @@
+package ru.dsec.phonecountry.admission;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdmissionFilterTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private AdmissionFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        PhoneCountryConfig config = new PhoneCountryConfig();
+        config.setApiKey("switch");
+        PhoneCountryConfig.Admission admission = config.getAdmission();
+        admission.setEnabled(true);
+        admission.setInitialLimit(1);
+        admission.setMinLimit(1);
+        admission.setMaxLimit(1);
+        admission.setQuota(2);
+        admission.setQuotas(Map.of("ui", 1));
+        admission.setQuotaPeriod(Duration.ofHours(1));
+        admission.setRetryAfter(Duration.ofSeconds(2));
+        meterRegistry = new SimpleMeterRegistry();
+        filter = new AdmissionFilter(config, new PhoneCountryMetrics(meterRegistry, config));
+    }
+
+    @Test
+    void testQuota_tooManyRequests() throws Exception {
+        assertEquals(200, perform("/api/phone/country/71423423412", "switch").getStatus());
+        assertEquals(200, perform("/api/phone/country/71423423412", "switch").getStatus());
+
+        MockHttpServletResponse rejected = perform("/api/phone/country/71423423412", "switch");
+        assertEquals(429, rejected.getStatus());
+        assertEquals("3600", rejected.getHeader("Retry-After"));
+        assertEquals("{\"message\":\"API key quota exceeded\"}", rejected.getContentAsString());
+
+        // Keys from the quota map have their own; requests without a key are not limited here
+        assertEquals(200, perform("/api/phone/typeahead", "ui").getStatus());
+        assertEquals(429, perform("/api/phone/typeahead", "ui").getStatus());
+        assertEquals(200, perform("/api/phone/typeahead", null).getStatus());
+        assertEquals(2.0, meterRegistry.get("phone.admission.rejected").tag("reason", "quota").counter().count());
+    }
+
+    @Test
+    void testConcurrency_serviceUnavailable() throws Exception {
+        assertTrue(filter.limit().tryAcquire());
+
+        MockHttpServletResponse rejected = perform("/api/phone/country/71423423412", null);
+        assertEquals(503, rejected.getStatus());
+        assertEquals("2", rejected.getHeader("Retry-After"));
+        assertEquals(1.0, meterRegistry.get("phone.admission.rejected").tag("reason", "concurrency").counter().count());
+        assertEquals(1.0, meterRegistry.get("phone.admission.in_flight").gauge().value());
+        assertEquals(1.0, meterRegistry.get("phone.admission.limit").gauge().value());
+
+        // Only the lookup API is limited
+        assertEquals(200, perform("/actuator/health", null).getStatus());
+        assertEquals(200, perform("/api/admin/status", null).getStatus());
+
+        filter.limit().release(0, false);
+        assertEquals(200, perform("/api/phone/country/71423423412", null).getStatus());
+        assertEquals(0, filter.limit().inFlight());
+    }
+
+    private MockHttpServletResponse perform(String path, String apiKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        if (apiKey != null) {
+            request.addHeader(AdmissionFilter.API_KEY_HEADER, apiKey);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
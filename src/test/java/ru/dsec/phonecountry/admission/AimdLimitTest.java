@@ -0,0 +1,85 @@
+package ru.dsec.phonecountry.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AimdLimitTest {
+
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(50);
+
+    @Test
+    void testTryAcquire_rejectsOverLimit() {
+        AimdLimit limit = new AimdLimit(2, 1, 10, THRESHOLD, 0.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        assertEquals(2, limit.inFlight());
+
+        limit.release(0, false);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void testRelease_slowRequestCutsLimit() {
+        AimdLimit limit = new AimdLimit(10, 4, 100, THRESHOLD, 0.5);
+
+        acquireAndRelease(limit, THRESHOLD + 1);
+        assertEquals(5, limit.limit());
+        acquireAndRelease(limit, THRESHOLD + 1);
+        acquireAndRelease(limit, THRESHOLD + 1);
+        assertEquals(4, limit.limit());
+    }
+
+    @Test
+    void testRelease_growsOnlyWhenInUse() {
+        AimdLimit limit = new AimdLimit(4, 1, 5, THRESHOLD, 0.5);
+
+        // One request at a time out of four: nothing learned
+        for (int i = 0; i < 100; i++) {
+            acquireAndRelease(limit, 0);
+        }
+        assertEquals(4, limit.limit());
+
+        // Fully used and fast: about one more per limit's worth of requests, up to the maximum
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j < limit.limit(); j++) {
+                assertTrue(limit.tryAcquire());
+            }
+            for (int j = limit.inFlight(); j > 0; j--) {
+                limit.release(0, true);
+            }
+        }
+        assertEquals(5, limit.limit());
+        assertEquals(0, limit.inFlight());
+    }
+
+    @Test
+    void testRelease_unsampledLeavesLimit() {
+        AimdLimit limit = new AimdLimit(10, 4, 100, THRESHOLD, 0.5);
+
+        acquireAndRelease(limit, TimeUnit.SECONDS.toNanos(30), false);
+
+        assertEquals(10, limit.limit());
+    }
+
+    @Test
+    void testConstructor_invalid() {
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 0, 100, THRESHOLD, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 20, 10, THRESHOLD, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new AimdLimit(10, 1, 100, THRESHOLD, 1));
+        assertEquals(100, new AimdLimit(1000, 1, 100, THRESHOLD, 0.5).limit());
+    }
+
+    private static void acquireAndRelease(AimdLimit limit, long latencyNanos) {
+        acquireAndRelease(limit, latencyNanos, true);
+    }
+
+    private static void acquireAndRelease(AimdLimit limit, long latencyNanos, boolean sample) {
+        assertTrue(limit.tryAcquire());
+        limit.release(latencyNanos, sample);
+    }
+}
@@ -0,0 +1,77 @@
+package ru.dsec.phonecountry.admission;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ApiKeyQuotasTest {
+
+    private static final long PERIOD = TimeUnit.SECONDS.toNanos(1);
+    private static final long ORIGIN = 1_000_000_000L;
+
+    @Test
+    void testTryAcquire_perKeyWindow() {
+        ApiKeyQuotas quotas = new ApiKeyQuotas(Map.of("switch", 3, "ui", 1), 0, PERIOD, 4, ORIGIN);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("switch", ORIGIN + 100));
+        }
+        assertEquals(PERIOD - 200, quotas.tryAcquire("switch", ORIGIN + 200));
+        // Other keys have their own quota
+        assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("ui", ORIGIN + 200));
+        assertNotEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("ui", ORIGIN + 300));
+
+        // The next window starts over
+        assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("switch", ORIGIN + PERIOD));
+    }
+
+    @Test
+    void testTryAcquire_unknownKeysShareAnonymous() {
+        ApiKeyQuotas quotas = new ApiKeyQuotas(Map.of("switch", 0), 2, PERIOD, 4, ORIGIN);
+
+        assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire(null, ORIGIN));
+        assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("guess", ORIGIN));
+        assertNotEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("another", ORIGIN));
+        // 0 is unlimited
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ApiKeyQuotas.ADMITTED, quotas.tryAcquire("switch", ORIGIN));
+        }
+    }
+
+    @Test
+    void testTryAcquire_exactAcrossThreads() throws InterruptedException {
+        ApiKeyQuotas quotas = new ApiKeyQuotas(Map.of("switch", 1000), 0, PERIOD, 8, ORIGIN);
+        AtomicInteger admitted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (quotas.tryAcquire("switch", ORIGIN) == ApiKeyQuotas.ADMITTED) {
+                        admitted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, admitted.get());
+    }
+}
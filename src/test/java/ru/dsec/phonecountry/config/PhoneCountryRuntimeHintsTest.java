@@ -0,0 +1,40 @@
+package ru.dsec.phonecountry.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import ru.dsec.phonecountry.model.dto.CountryResponse;
+import ru.dsec.phonecountry.model.dto.PhoneRequest;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PhoneCountryRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    PhoneCountryRuntimeHintsTest() {
+        new PhoneCountryRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testBundledResources() {
+        assertTrue(RuntimeHintsPredicates.resource().forResource("country-codes.snapshot").test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("numbering-plan.tsv").test(hints));
+    }
+
+    @Test
+    void testConfigurationBinding() throws NoSuchMethodException {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(PhoneCountryConfig.class.getMethod("setOfflineStartup", boolean.class)).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(PhoneCountryConfig.Enrich.class.getMethod("setChunkSize", int.class)).test(hints));
+    }
+
+    @Test
+    void testJsonBodies() throws NoSuchMethodException {
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(PhoneRequest.class.getMethod("phoneNumber")).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection()
+                .onMethod(CountryResponse.class.getMethod("country")).test(hints));
+    }
+}
@@ -0,0 +1,102 @@
+package ru.dsec.phonecountry.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.RefreshStatus;
+
+import java.time.Instant;
+import java.util.Map;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(controllers = AdminController.class,
+        properties = {"phone.country.admin-enabled=true", "phone.country.admin-api-key=" + AdminControllerTest.API_KEY,
+                "phone.country.api-key=" + AdminControllerTest.CLIENT_KEY})
+@Import(PhoneCountryConfig.class)
+class AdminControllerTest {
+
+    static final String API_KEY = "admin-secret";
+    static final String CLIENT_KEY = "client-secret";
+    private static final Instant UPDATED = Instant.parse("2024-06-10T06:00:00Z");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PhoneCountryService service;
+
+    @Test
+    void testReload_started() throws Exception {
+        when(service.requestRefresh()).thenReturn(true);
+        when(service.refreshStatus()).thenReturn(new RefreshStatus(true, "updated", UPDATED, UPDATED, UPDATED));
+
+        mockMvc.perform(post("/api/admin/reload").header("X-API-Key", API_KEY))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/admin/status"))
+                .andExpect(jsonPath("$.running").value(true));
+    }
+
+    @Test
+    void testReload_alreadyRunning() throws Exception {
+        when(service.requestRefresh()).thenReturn(false);
+        when(service.refreshStatus()).thenReturn(new RefreshStatus(true, null, UPDATED, null, null));
+
+        mockMvc.perform(post("/api/admin/reload").header("X-API-Key", API_KEY))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testReload_unauthorized() throws Exception {
+        mockMvc.perform(post("/api/admin/reload"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/admin/reload").header("X-API-Key", "wrong"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/admin/index"))
+                .andExpect(status().isUnauthorized());
+        // A lookup client's key grants lookups only
+        mockMvc.perform(post("/api/admin/reload").header("X-API-Key", CLIENT_KEY))
+                .andExpect(status().isUnauthorized());
+
+        verify(service, never()).requestRefresh();
+    }
+
+    @Test
+    void testStatus() throws Exception {
+        when(service.refreshStatus()).thenReturn(new RefreshStatus(false, "failed", UPDATED, UPDATED, null));
+
+        mockMvc.perform(get("/api/admin/status").header("X-API-Key", API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.running").value(false))
+                .andExpect(jsonPath("$.lastOutcome").value("failed"))
+                .andExpect(jsonPath("$.lastFinished").value("2024-06-10T06:00:00Z"));
+    }
+
+    @Test
+    void testIndex() throws Exception {
+        CountryCodeIndex index = CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan", "1242", "Bahamas"))
+                .withVersion(42);
+        when(service.index()).thenReturn(index);
+        when(service.refreshStatus()).thenReturn(new RefreshStatus(false, "updated", UPDATED, UPDATED, UPDATED));
+
+        mockMvc.perform(get("/api/admin/index").header("X-API-Key", API_KEY))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.prefixes").value(3))
+                .andExpect(jsonPath("$.depth").value(4))
+                .andExpect(jsonPath("$.nodes").value(index.nodeCount()))
+                .andExpect(jsonPath("$.memoryBytes").value(index.estimatedBytes()))
+                .andExpect(jsonPath("$.version").value(42))
+                .andExpect(jsonPath("$.lastRefresh").value("2024-06-10T06:00:00Z"));
+    }
+}
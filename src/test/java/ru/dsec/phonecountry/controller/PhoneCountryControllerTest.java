@@ -6,21 +6,32 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
-import ru.dsec.phonecountry.exception.CountryNotFoundException;
-import ru.dsec.phonecountry.exception.InvalidPhoneNumberException;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
 import ru.dsec.phonecountry.model.dto.CountryResponse;
 import ru.dsec.phonecountry.model.dto.ErrorResponse;
 import ru.dsec.phonecountry.model.dto.PhoneRequest;
+import ru.dsec.phonecountry.service.CountryCodeEntry;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.LookupResult;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
 import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.TypeaheadResult;
+
+import java.util.List;
+import java.util.Map;
 
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @WebMvcTest(PhoneCountryController.class)
+@Import({BatchLookupWriter.class, LookupResponses.class, PhoneCountryConfig.class})
 class PhoneCountryControllerTest {
 
     @Autowired
@@ -29,6 +40,9 @@ class PhoneCountryControllerTest {
     @MockBean
     private PhoneCountryService service;
 
+    @MockBean
+    private PhoneCountryMetrics metrics;
+
     @Autowired
     private ObjectMapper objectMapper;
 
@@ -40,10 +54,11 @@ class PhoneCountryControllerTest {
     @Test
     void testGetCountry_successRussia() throws Exception {
         String phoneNumber = "71423423412";
-        when(service.determineCountry(phoneNumber)).thenReturn("Russia");
+        when(service.lookup(phoneNumber)).thenReturn(found(1, "7", "Russia"));
 
         String requestJson = objectMapper.writeValueAsString(new PhoneRequest(phoneNumber));
-        String responseJson = objectMapper.writeValueAsString(new CountryResponse("Russia"));
+        String responseJson = objectMapper.writeValueAsString(
+                new CountryResponse("Russia", "7", List.of("Russia"), List.of("RU")));
 
         mockMvc.perform(post("/api/phone/country")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -51,16 +66,17 @@ class PhoneCountryControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(responseJson));
 
-        verify(service, times(1)).determineCountry(phoneNumber);
+        verify(service, times(1)).lookup(phoneNumber);
     }
 
     @Test
     void testGetCountry_successKazakhstan() throws Exception {
         String phoneNumber = "77112227231";
-        when(service.determineCountry(phoneNumber)).thenReturn("Kazakhstan");
+        when(service.lookup(phoneNumber)).thenReturn(found(1, "77", "Kazakhstan"));
 
         String requestJson = objectMapper.writeValueAsString(new PhoneRequest(phoneNumber));
-        String responseJson = objectMapper.writeValueAsString(new CountryResponse("Kazakhstan"));
+        String responseJson = objectMapper.writeValueAsString(
+                new CountryResponse("Kazakhstan", "77", List.of("Kazakhstan"), List.of("KZ")));
 
         mockMvc.perform(post("/api/phone/country")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -68,16 +84,17 @@ class PhoneCountryControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(responseJson));
 
-        verify(service, times(1)).determineCountry(phoneNumber);
+        verify(service, times(1)).lookup(phoneNumber);
     }
 
     @Test
     void testGetCountry_successUnitedStatesAndCanada() throws Exception {
         String phoneNumber = "11165384765";
-        when(service.determineCountry(phoneNumber)).thenReturn("United States, Canada");
+        when(service.lookup(phoneNumber)).thenReturn(found(1, "1", "United States", "Canada"));
 
         String requestJson = objectMapper.writeValueAsString(new PhoneRequest(phoneNumber));
-        String responseJson = objectMapper.writeValueAsString(new CountryResponse("United States, Canada"));
+        String responseJson = objectMapper.writeValueAsString(new CountryResponse("United States, Canada", "1",
+                List.of("United States", "Canada"), List.of("US", "CA")));
 
         mockMvc.perform(post("/api/phone/country")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -85,14 +102,14 @@ class PhoneCountryControllerTest {
                 .andExpect(status().isOk())
                 .andExpect(content().json(responseJson));
 
-        verify(service, times(1)).determineCountry(phoneNumber);
+        verify(service, times(1)).lookup(phoneNumber);
     }
 
     @Test
     void testGetCountry_invalidPhoneNumber() throws Exception {
         String phoneNumber = "abc";
-        when(service.determineCountry(phoneNumber))
-                .thenThrow(new InvalidPhoneNumberException("Invalid phone number format"));
+        when(service.lookup(phoneNumber))
+                .thenReturn(new LookupResult.Invalid("Invalid phone number format"));
 
         String requestJson = objectMapper.writeValueAsString(new PhoneRequest(phoneNumber));
         String responseJson = objectMapper.writeValueAsString(new ErrorResponse("Invalid phone number format"));
@@ -103,14 +120,13 @@ class PhoneCountryControllerTest {
                 .andExpect(status().isBadRequest())
                 .andExpect(content().json(responseJson));
 
-        verify(service, times(1)).determineCountry(phoneNumber);
+        verify(service, times(1)).lookup(phoneNumber);
     }
 
     @Test
     void testGetCountry_countryNotFound() throws Exception {
         String phoneNumber = "9991234567";
-        when(service.determineCountry(phoneNumber))
-                .thenThrow(new CountryNotFoundException("Country not found for phone number: " + phoneNumber));
+        when(service.lookup(phoneNumber)).thenReturn(new LookupResult.NotFound(phoneNumber, 1));
 
         String requestJson = objectMapper.writeValueAsString(new PhoneRequest(phoneNumber));
         String responseJson = objectMapper.writeValueAsString(
@@ -122,6 +138,110 @@ class PhoneCountryControllerTest {
                 .andExpect(status().isNotFound())
                 .andExpect(content().json(responseJson));
 
-        verify(service, times(1)).determineCountry(phoneNumber);
+        verify(service, times(1)).lookup(phoneNumber);
+    }
+
+    @Test
+    void testGetCountryByNumber_etagAndCacheControl() throws Exception {
+        when(service.lookup("+71423423412")).thenReturn(found(42, "7", "Russia"));
+
+        mockMvc.perform(get("/api/phone/country/{number}", "+71423423412"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v42-7\""))
+                .andExpect(header().string("Cache-Control", "public, max-age=3600"))
+                .andExpect(content().json(
+                        "{\"country\":\"Russia\",\"matchedPrefix\":\"7\",\"countries\":[\"Russia\"],\"iso2\":[\"RU\"]}"));
+
+        mockMvc.perform(get("/api/phone/country/{number}", "+71423423412")
+                        .header("If-None-Match", "\"v42-7\""))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        // A refresh bumps the version, so the old tag no longer matches
+        when(service.lookup("+71423423412")).thenReturn(found(43, "7", "Russia"));
+        mockMvc.perform(get("/api/phone/country/{number}", "+71423423412")
+                        .header("If-None-Match", "\"v42-7\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v43-7\""));
+    }
+
+    @Test
+    void testGetCountryByNumber_invalidNotCached() throws Exception {
+        when(service.lookup("abc")).thenReturn(new LookupResult.Invalid("Phone number contains invalid characters"));
+
+        mockMvc.perform(get("/api/phone/country/{number}", "abc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("ETag"))
+                .andExpect(header().doesNotExist("Cache-Control"));
+    }
+
+    @Test
+    void testTypeahead_etagPerNode() throws Exception {
+        CountryCodeIndex index = CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan"));
+        when(service.typeahead("+7")).thenReturn(new TypeaheadResult.Suggested(index.suggest("7"), 42));
+        when(service.typeahead("+7 49")).thenReturn(new TypeaheadResult.Suggested(index.suggest("749"), 42));
+
+        mockMvc.perform(get("/api/phone/typeahead").param("number", "+7"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v42-7*\""))
+                .andExpect(header().string("Cache-Control", "public, max-age=3600"))
+                .andExpect(content().json("{\"matchedPrefix\":\"7\",\"country\":\"Russia\","
+                        + "\"possible\":[\"Kazakhstan\",\"Russia\"],\"complete\":false}"));
+
+        mockMvc.perform(get("/api/phone/typeahead").param("number", "+7 49"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v42-7\""))
+                .andExpect(content().json("{\"matchedPrefix\":\"7\",\"country\":\"Russia\","
+                        + "\"possible\":[\"Russia\"],\"complete\":true}"));
+    }
+
+    @Test
+    void testTypeahead_invalid() throws Exception {
+        when(service.typeahead("7a")).thenReturn(new TypeaheadResult.Invalid("Phone number contains invalid characters"));
+
+        mockMvc.perform(get("/api/phone/typeahead").param("number", "7a"))
+                .andExpect(status().isBadRequest())
+                .andExpect(header().doesNotExist("ETag"));
+    }
+
+    @Test
+    void testGetCountries_jsonArray() throws Exception {
+        when(service.lookup("71423423412")).thenReturn(found(1, "7", "Russia"));
+        when(service.lookup("77112227231")).thenReturn(found(1, "77", "Kazakhstan"));
+
+        mockMvc.perform(post("/api/phone/countries")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"71423423412\", {\"phoneNumber\": \"77112227231\"}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"phoneNumber\":\"71423423412\",\"country\":\"Russia\",\"matchedPrefix\":\"7\","
+                                + "\"countries\":[\"Russia\"],\"iso2\":[\"RU\"]}\n"
+                                + "{\"phoneNumber\":\"77112227231\",\"country\":\"Kazakhstan\",\"matchedPrefix\":\"77\","
+                                + "\"countries\":[\"Kazakhstan\"],\"iso2\":[\"KZ\"]}\n"));
+    }
+
+    @Test
+    void testGetCountries_ndjsonWithFailures() throws Exception {
+        when(service.lookup("abc"))
+                .thenReturn(new LookupResult.Invalid("Phone number contains invalid characters"));
+        when(service.lookup("9991234567")).thenReturn(new LookupResult.NotFound("9991234567", 1));
+        when(service.lookup("71423423412")).thenReturn(found(1, "7", "Russia"));
+
+        mockMvc.perform(post("/api/phone/countries")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("\"abc\"\n\"9991234567\"\n{\"phoneNumber\":\"71423423412\"}\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"phoneNumber\":\"abc\",\"status\":400,"
+                                + "\"message\":\"Phone number contains invalid characters\"}\n"
+                                + "{\"phoneNumber\":\"9991234567\",\"status\":404,"
+                                + "\"message\":\"Country not found for phone number: 9991234567\"}\n"
+                                + "{\"phoneNumber\":\"71423423412\",\"country\":\"Russia\",\"matchedPrefix\":\"7\","
+                                + "\"countries\":[\"Russia\"],\"iso2\":[\"RU\"]}\n"));
+    }
+
+    private static LookupResult found(long version, String prefix, String... countries) {
+        return new LookupResult.Found(CountryCodeEntry.of(prefix, List.of(countries)), version);
     }
-}
\ No newline at end of file
+}
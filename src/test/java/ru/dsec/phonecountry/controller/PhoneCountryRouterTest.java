@@ -0,0 +1,119 @@
+package ru.dsec.phonecountry.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeEntry;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.LookupResult;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+import ru.dsec.phonecountry.service.TypeaheadResult;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(properties = "phone.country.serving=router")
+@Import({PhoneCountryRouter.class, BatchLookupWriter.class, LookupResponses.class, PhoneCountryConfig.class})
+class PhoneCountryRouterTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private PhoneCountryService service;
+
+    @MockBean
+    private PhoneCountryMetrics metrics;
+
+    @Test
+    void testCountry_found() throws Exception {
+        when(service.lookup("71423423412")).thenReturn(found(1, "7", "Russia"));
+
+        mockMvc.perform(post("/api/phone/country")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phoneNumber\":\"71423423412\"}"))
+                .andExpect(status().isOk())
+                .andExpect(content().json(
+                        "{\"country\":\"Russia\",\"matchedPrefix\":\"7\",\"countries\":[\"Russia\"],\"iso2\":[\"RU\"]}"));
+    }
+
+    @Test
+    void testCountry_errors() throws Exception {
+        when(service.lookup("abc")).thenReturn(new LookupResult.Invalid("Phone number contains invalid characters"));
+        when(service.lookup("9991234567")).thenReturn(new LookupResult.NotFound("9991234567", 1));
+
+        mockMvc.perform(post("/api/phone/country")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phoneNumber\":\"abc\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().json("{\"message\":\"Phone number contains invalid characters\"}"));
+        mockMvc.perform(post("/api/phone/country")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"phoneNumber\":\"9991234567\"}"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().json("{\"message\":\"Country not found for phone number: 9991234567\"}"));
+    }
+
+    @Test
+    void testCountries_ndjson() throws Exception {
+        when(service.lookup("71423423412")).thenReturn(found(1, "7", "Russia"));
+        when(service.lookup("9991234567")).thenReturn(new LookupResult.NotFound("9991234567", 1));
+
+        mockMvc.perform(post("/api/phone/countries")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content("\"71423423412\"\n\"9991234567\"\n"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(
+                        "{\"phoneNumber\":\"71423423412\",\"country\":\"Russia\",\"matchedPrefix\":\"7\","
+                                + "\"countries\":[\"Russia\"],\"iso2\":[\"RU\"]}\n"
+                                + "{\"phoneNumber\":\"9991234567\",\"status\":404,"
+                                + "\"message\":\"Country not found for phone number: 9991234567\"}\n"));
+    }
+
+    @Test
+    void testCountries_unsupportedMediaTypes() throws Exception {
+        mockMvc.perform(post("/api/phone/countries")
+                        .contentType(MediaType.TEXT_PLAIN)
+                        .content("71423423412\n"))
+                .andExpect(status().isUnsupportedMediaType());
+        mockMvc.perform(post("/api/phone/countries")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .accept(MediaType.APPLICATION_XML)
+                        .content("\"71423423412\"\n"))
+                .andExpect(status().isNotAcceptable());
+        verifyNoInteractions(service);
+    }
+
+    @Test
+    void testTypeahead() throws Exception {
+        CountryCodeIndex index = CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan"));
+        when(service.typeahead("")).thenReturn(new TypeaheadResult.Suggested(index.suggest(""), 42));
+
+        mockMvc.perform(get("/api/phone/typeahead"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"v42-*\""))
+                .andExpect(content().json("{\"matchedPrefix\":null,\"country\":null,"
+                        + "\"possible\":[\"Kazakhstan\",\"Russia\"],\"complete\":false}"));
+
+        mockMvc.perform(get("/api/phone/typeahead").header("If-None-Match", "\"v42-*\""))
+                .andExpect(status().isNotModified());
+    }
+
+    private static LookupResult found(long version, String prefix, String... countries) {
+        return new LookupResult.Found(CountryCodeEntry.of(prefix, List.of(countries)), version);
+    }
+}
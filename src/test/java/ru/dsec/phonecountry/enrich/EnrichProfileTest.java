@@ -0,0 +1,60 @@
+package ru.dsec.phonecountry.enrich;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.ScheduledAnnotationBeanPostProcessor;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@SpringBootTest
+@ActiveProfiles({"test", "enrich"})
+class EnrichProfileTest {
+
+    @TempDir
+    static Path dir;
+
+    @Autowired
+    private ApplicationContext context;
+
+    @Autowired
+    private PhoneCountryService service;
+
+    // Where a refresh from Wikipedia would be submitted once the application is ready
+    @MockBean(name = TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME)
+    private TaskExecutor taskExecutor;
+
+    @DynamicPropertySource
+    static void enrichFiles(DynamicPropertyRegistry registry) throws IOException {
+        Path input = Files.write(dir.resolve("calls.csv"), List.of("id,number", "1,+7 495 123 45 67"),
+                StandardCharsets.UTF_8);
+        registry.add("phone.country.enrich.input", input::toString);
+        registry.add("phone.country.enrich.output", () -> dir.resolve("calls-enriched.csv").toString());
+    }
+
+    @Test
+    void testEnrichProfile_neverRefreshesFromWikipedia() throws IOException {
+        assertEquals(List.of("id,number,country", "1,+7 495 123 45 67,Russia"),
+                Files.readAllLines(dir.resolve("calls-enriched.csv"), StandardCharsets.UTF_8));
+
+        verifyNoInteractions(taskExecutor);
+        assertTrue(context.getBeansOfType(ScheduledAnnotationBeanPostProcessor.class).isEmpty());
+        assertNull(service.refreshStatus().lastStarted());
+    }
+}
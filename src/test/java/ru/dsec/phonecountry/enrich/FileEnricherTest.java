@@ -0,0 +1,111 @@
+package ru.dsec.phonecountry.enrich;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class FileEnricherTest {
+
+    @TempDir
+    Path dir;
+
+    private PhoneCountryService service;
+    private FileEnricher enricher;
+
+    @BeforeEach
+    void setUp() {
+        service = mock(PhoneCountryService.class);
+        when(service.index()).thenReturn(CountryCodeIndex.build(Map.of("7", "Russia", "1", "Canada, United States")));
+        enricher = new FileEnricher(service);
+    }
+
+    @Test
+    void testEnrich_csvKeepsOrderAcrossChunks() throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("id,number,duration");
+        for (int i = 0; i < 10_000; i++) {
+            String number = switch (i % 3) {
+                case 0 -> "+7 495 123 45 67";
+                case 1 -> "\"+1 (212) 555-0100\"";
+                default -> "+999 123 4567";
+            };
+            lines.add(i + "," + number + "," + i % 60);
+        }
+        Path input = write("calls.csv", lines);
+        Path output = dir.resolve("out/calls-enriched.csv");
+
+        FileEnricher.Report report = enricher.enrich(settings(input, output, 1));
+
+        List<String> enriched = Files.readAllLines(output, StandardCharsets.UTF_8);
+        assertEquals(lines.size(), enriched.size());
+        assertEquals("id,number,duration,country", enriched.get(0));
+        assertEquals("0,+7 495 123 45 67,0,Russia", enriched.get(1));
+        assertEquals("1,\"+1 (212) 555-0100\",1,\"Canada, United States\"", enriched.get(2));
+        assertEquals("2,+999 123 4567,2,", enriched.get(3));
+        for (int i = 1; i < lines.size(); i++) {
+            assertTrue(enriched.get(i).startsWith(lines.get(i) + ","), enriched.get(i));
+        }
+        assertEquals(10_000, report.lines());
+        assertEquals(6667, report.found());
+        assertEquals(3333, report.notFound());
+        assertEquals(0, report.invalid());
+        assertEquals(Files.size(input), report.bytes());
+        try (var files = Files.list(output.getParent())) {
+            assertEquals(1, files.count(), "temporary file left behind");
+        }
+    }
+
+    @Test
+    void testEnrich_tsvWithoutHeader() throws IOException {
+        Path input = write("calls.tsv", List.of("a\t+7 495 123 45 67", "b\t+1 212 555 0100", "c"));
+        Path output = dir.resolve("calls-enriched.tsv");
+        PhoneCountryConfig.Enrich settings = settings(input, output, 1);
+        settings.setHeader(false);
+
+        FileEnricher.Report report = enricher.enrich(settings);
+
+        assertEquals(List.of("a\t+7 495 123 45 67\tRussia", "b\t+1 212 555 0100\tCanada, United States", "c\t"),
+                Files.readAllLines(output, StandardCharsets.UTF_8));
+        assertEquals(3, report.lines());
+        assertEquals(1, report.invalid());
+        verify(service, never()).lookup(any());
+    }
+
+    @Test
+    void testField_quoting() {
+        assertEquals("+7 495", FileEnricher.field("1,+7 495,x", 1, ','));
+        assertEquals("+1 (212) 555-0100, ext", FileEnricher.field("\"a,b\",\"+1 (212) 555-0100, ext\",x", 1, ','));
+        assertEquals("say \"hi\"", FileEnricher.field("\"say \"\"hi\"\"\"", 0, ','));
+        assertEquals("", FileEnricher.field("1,,x", 1, ','));
+        assertNull(FileEnricher.field("1", 1, ','));
+    }
+
+    private PhoneCountryConfig.Enrich settings(Path input, Path output, int column) {
+        PhoneCountryConfig.Enrich settings = new PhoneCountryConfig.Enrich();
+        settings.setInput(input);
+        settings.setOutput(output);
+        settings.setColumn(column);
+        settings.setChunkSize(64);
+        settings.setParallelism(4);
+        return settings;
+    }
+
+    private Path write(String name, List<String> lines) throws IOException {
+        return Files.write(dir.resolve(name), lines, StandardCharsets.UTF_8);
+    }
+}
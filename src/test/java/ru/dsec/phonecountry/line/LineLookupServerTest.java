@@ -0,0 +1,161 @@
+package ru.dsec.phonecountry.line;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.service.CountryCodeIndex;
+import ru.dsec.phonecountry.service.PhoneCountryMetrics;
+import ru.dsec.phonecountry.service.PhoneCountryService;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class LineLookupServerTest {
+
+    private PhoneCountryService service;
+    private PhoneCountryConfig config;
+    private SimpleMeterRegistry meterRegistry;
+    private LineLookupServer server;
+
+    @BeforeEach
+    void setUp() {
+        service = mock(PhoneCountryService.class);
+        when(service.index()).thenReturn(CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan",
+                "1242", "Bahamas", "7840", "Abkhazia", "1", "Canada, United States")));
+        config = new PhoneCountryConfig();
+        config.getLine().setPort(0);
+        config.getLine().setThreads(2);
+        // Smaller than a pipelined batch, so both buffers fill up and drain repeatedly
+        config.getLine().setBufferSize(64);
+        meterRegistry = new SimpleMeterRegistry();
+        server = new LineLookupServer(service, config, new PhoneCountryMetrics(meterRegistry, config));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop();
+    }
+
+    @Test
+    void testAnswers() throws IOException {
+        try (Socket socket = new Socket("localhost", server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("+7 495 123 45 67\n7712222\r\n+1 242 322 2931\n+999 123 4567\nabc\n+7 840 12"
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            out.write(("3 4567\n" + "1".repeat(200) + "\n+1 212 555 0100\n").getBytes(StandardCharsets.US_ASCII));
+            socket.shutdownOutput();
+
+            assertEquals("7 RU\n77 KZ\n1242 BS\n-\n!\n7840 --\n!\n1 CA,US\n",
+                    new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        assertEquals(5.0, meterRegistry.get("phone.line.lookups").tag("outcome", "found").counter().count());
+        assertEquals(1.0, meterRegistry.get("phone.line.lookups").tag("outcome", "not_found").counter().count());
+        assertEquals(2.0, meterRegistry.get("phone.line.lookups").tag("outcome", "invalid").counter().count());
+    }
+
+    @Test
+    void testPipelinedInOrder() throws Exception {
+        int numbers = 100_000;
+        String[] requests = {"+7 495 123 45 67\n", "+999 123 4567\n", "x\n"};
+        String[] answers = {"7 RU", "-", "!"};
+        try (Socket socket = new Socket("localhost", server.port())) {
+            // Everything is sent before any answer is read
+            CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+                try {
+                    OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+                    for (int i = 0; i < numbers; i++) {
+                        out.write(requests[i % 3].getBytes(StandardCharsets.US_ASCII));
+                    }
+                    out.flush();
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            int received = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                assertEquals(answers[received % 3], line, "answer " + received);
+                received++;
+            }
+            writer.join();
+            assertEquals(numbers, received);
+        }
+    }
+
+    @Test
+    void testLastLineWithoutNewline() throws IOException {
+        try (Socket socket = new Socket("localhost", server.port())) {
+            OutputStream out = socket.getOutputStream();
+            out.write("+999 123 4567\n+7 495 1234567".getBytes(StandardCharsets.US_ASCII));
+            socket.shutdownOutput();
+
+            assertEquals("-\n7 RU\n", new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    void testAnswerLongerThanBuffer_closesConnection() throws IOException {
+        // More countries than the 64 byte buffer has room for, as if a refresh brought them
+        String countries = IntStream.range(0, 30).mapToObj(i -> "Country " + i).collect(Collectors.joining(", "));
+        when(service.index()).thenReturn(CountryCodeIndex.build(Map.of("7", countries)));
+
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.getOutputStream().write("+7 495 123 45 67\n".getBytes(StandardCharsets.US_ASCII));
+
+            assertEquals(0, socket.getInputStream().readAllBytes().length);
+        }
+    }
+
+    @Test
+    void testUnexpectedFailure_closesOnlyThatConnection() throws IOException {
+        CountryCodeIndex index = service.index();
+        when(service.index()).thenThrow(new IllegalStateException("Index unavailable")).thenReturn(index);
+
+        try (Socket socket = new Socket("localhost", server.port())) {
+            socket.getOutputStream().write("+7 495 123 45 67\n".getBytes(StandardCharsets.US_ASCII));
+
+            assertEquals(0, socket.getInputStream().readAllBytes().length);
+        }
+        // Both event loops, the accepting one included, still serve new connections
+        for (int i = 0; i < 2; i++) {
+            try (Socket socket = new Socket("localhost", server.port())) {
+                socket.getOutputStream().write("+7 495 123 45 67\n".getBytes(StandardCharsets.US_ASCII));
+                socket.shutdownOutput();
+
+                assertEquals("7 RU\n", new String(socket.getInputStream().readAllBytes(), StandardCharsets.US_ASCII));
+            }
+        }
+    }
+
+    @Test
+    void testStart_bufferShorterThanLongestAnswer() {
+        config.getLine().setBufferSize(4);
+        LineLookupServer tooSmall =
+                new LineLookupServer(service, config, new PhoneCountryMetrics(meterRegistry, config));
+
+        assertThrows(IllegalStateException.class, tooSmall::start);
+        assertEquals(-1, tooSmall.port());
+        tooSmall.stop();
+    }
+}
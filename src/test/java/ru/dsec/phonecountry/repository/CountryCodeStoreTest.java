@@ -0,0 +1,114 @@
+package ru.dsec.phonecountry.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@JdbcTest
+@Import(CountryCodeStore.class)
+class CountryCodeStoreTest {
+
+    @Autowired
+    private CountryCodeStore store;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void testReplaceAll_emptyTable() {
+        CountryCodeStore.Changes changes = store.replaceAll(Map.of("+7", "Russia", "+77", "Kazakhstan"));
+
+        assertEquals(new CountryCodeStore.Changes(2, 0, 0), changes);
+        assertEquals(Map.of("+7", "Russia", "+77", "Kazakhstan"), readAll());
+    }
+
+    @Test
+    void testReplaceAll_onlyChangedRows() {
+        store.replaceAll(Map.of("+7", "Russia", "+77", "Kazakhstan", "+1242", "Bahamas"));
+        Long russiaId = jdbcTemplate.queryForObject("SELECT id FROM country_code WHERE code = '+7'", Long.class);
+
+        CountryCodeStore.Changes changes = store.replaceAll(Map.of("+7", "Russia", "+77", "Kazakhstan, Russia",
+                "+880", "Bangladesh"));
+
+        assertEquals(new CountryCodeStore.Changes(1, 1, 1), changes);
+        assertEquals(Map.of("+7", "Russia", "+77", "Kazakhstan, Russia", "+880", "Bangladesh"), readAll());
+        assertEquals(russiaId, jdbcTemplate.queryForObject("SELECT id FROM country_code WHERE code = '+7'", Long.class));
+        assertTrue(store.replaceAll(readAll()).isEmpty());
+    }
+
+    @Test
+    void testCodeIsUnique() {
+        store.replaceAll(Map.of("+7", "Russia"));
+
+        assertThrows(DuplicateKeyException.class, () ->
+                jdbcTemplate.update("INSERT INTO country_code (code, country_name) VALUES ('+7', 'Russia')"));
+    }
+
+    @Test
+    void testReadAll_emptyTable() {
+        assertEquals(0, store.readAll((code, countryName) -> fail("No rows expected")));
+    }
+
+    @Test
+    void testVersion_bumpedOnlyByChanges() {
+        long initial = store.version();
+
+        store.replaceAll(Map.of("+7", "Russia"));
+        long written = store.version();
+        store.replaceAll(Map.of("+7", "Russia"));
+
+        assertEquals(initial + 1, written);
+        assertEquals(written, store.version());
+    }
+
+    @Test
+    void testMarkRefreshed() {
+        Instant at = Instant.parse("2024-06-10T06:00:00Z");
+
+        store.markRefreshed(at);
+
+        assertEquals(at, store.refreshedAt());
+    }
+
+    @Test
+    void testClaimRefresh_oneOwnerAtATime() {
+        Instant now = Instant.parse("2024-06-10T06:00:00Z");
+
+        assertTrue(store.claimRefresh("a", now, now.plusSeconds(300)));
+        assertFalse(store.claimRefresh("b", now.plusSeconds(60), now.plusSeconds(360)));
+        assertEquals(Optional.of("written"), store.whileRefreshOwner("a", now.plusSeconds(600), () -> "written"));
+        assertEquals(Optional.empty(), store.whileRefreshOwner("b", now.plusSeconds(600), () -> "written"));
+
+        store.releaseRefresh("a");
+        assertTrue(store.claimRefresh("b", now.plusSeconds(60), now.plusSeconds(360)));
+    }
+
+    @Test
+    void testClaimRefresh_expiredLeaseTakenOver() {
+        Instant now = Instant.parse("2024-06-10T06:00:00Z");
+        store.claimRefresh("a", now, now.plusSeconds(300));
+
+        assertTrue(store.claimRefresh("b", now.plusSeconds(301), now.plusSeconds(601)));
+        // The instance that lost its claim can neither write nor release the new owner's
+        assertEquals(Optional.empty(), store.whileRefreshOwner("a", now.plusSeconds(900), () -> "written"));
+        store.releaseRefresh("a");
+        assertFalse(store.claimRefresh("c", now.plusSeconds(302), now.plusSeconds(602)));
+    }
+
+    private Map<String, String> readAll() {
+        Map<String, String> rows = new HashMap<>();
+        int count = store.readAll(rows::put);
+        assertEquals(count, rows.size());
+        return rows;
+    }
+}
@@ -0,0 +1,178 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountryCodeIndexTest {
+
+    private final CountryCodeIndex index = CountryCodeIndex.build(Map.of(
+            "1", "United States, Canada",
+            "1242", "Bahamas",
+            "599", "Curaçao",
+            "5993", "Caribbean Netherlands",
+            "5997", "Caribbean Netherlands",
+            "7", "Russia",
+            "76", "Kazakhstan",
+            "77", "Kazakhstan"));
+
+    @Test
+    void testFind_longestPrefixWins() {
+        assertEquals("Bahamas", countryOf(index, "12423222931"));
+        assertEquals("United States, Canada", countryOf(index, "11165384765"));
+        assertEquals("United States, Canada", countryOf(index, "12413222931"));
+    }
+
+    @Test
+    void testFind_subCodes() {
+        assertEquals("Caribbean Netherlands", countryOf(index, "59971234567"));
+        assertEquals("Curaçao", countryOf(index, "59991234567"));
+        assertEquals("Kazakhstan", countryOf(index, "77112227231"));
+        assertEquals("Russia", countryOf(index, "71423423412"));
+    }
+
+    @Test
+    void testFind_leadingPlus() {
+        assertEquals("Bahamas", countryOf(index, "+12423222931"));
+        assertEquals("1242", prefixOf(index, "+12423222931"));
+    }
+
+    @Test
+    void testFind_noMatch() {
+        assertNull(countryOf(index, "9991234567"));
+        assertNull(countryOf(index, ""));
+        assertNull(countryOf(CountryCodeIndex.EMPTY, "71423423412"));
+    }
+
+    @Test
+    void testBuild_skipsNonDigitCodes() {
+        CountryCodeIndex withJunk = CountryCodeIndex.build(Map.of("7", "Russia", "7a", "Junk", "", "Everywhere"));
+        assertEquals(1, withJunk.size());
+        assertEquals("Russia", countryOf(withJunk, "7123456789"));
+        assertNull(countryOf(withJunk, "9991234567"));
+    }
+
+    @Test
+    void testEntry_structured() {
+        CountryCodeEntry entry = index.entry(index.match(PhoneNumberNormalizer.pack("+1 212 555 0100")));
+        assertEquals("1", entry.prefix());
+        assertEquals(List.of("United States", "Canada"), entry.countries());
+        assertEquals(List.of("US", "CA"), entry.iso2());
+        assertEquals("United States, Canada", entry.country());
+        assertEquals("{\"country\":\"United States, Canada\",\"matchedPrefix\":\"1\","
+                        + "\"countries\":[\"United States\",\"Canada\"],\"iso2\":[\"US\",\"CA\"]}",
+                new String(entry.json(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testEntry_sharedCountries() {
+        CountryCodeEntry kz76 = index.entry(index.match(PhoneNumberNormalizer.pack("+7 612 345 6789")));
+        CountryCodeEntry kz77 = index.entry(index.match(PhoneNumberNormalizer.pack("+7 712 222 7231")));
+        assertEquals("76", kz76.prefix());
+        assertEquals("77", kz77.prefix());
+        assertSame(kz76.countries(), kz77.countries());
+        assertSame(kz76.iso2(), kz77.iso2());
+        assertEquals("{\"country\":\"Curaçao\",\"matchedPrefix\":\"599\",\"countries\":[\"Curaçao\"],\"iso2\":[\"CW\"]}",
+                new String(index.entry(index.match(PhoneNumberNormalizer.pack("+599 9 123 4567"))).json(),
+                        StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testAddAll_deeperPrefixesOverlaid() {
+        CountryCodeIndex overlaid = CountryCodeIndex.builder(index.size() + 2)
+                .addAll(index)
+                .add("1416", List.of("Canada"))
+                .add("1212", List.of("United States"))
+                .build();
+        assertEquals(index.size() + 2, overlaid.size());
+        assertEquals(4, overlaid.depth());
+        assertEquals("Canada", countryOf(overlaid, "14165550100"));
+        assertEquals("United States", countryOf(overlaid, "12125550100"));
+        assertEquals("United States, Canada", countryOf(overlaid, "18005550100"));
+        assertEquals("Bahamas", countryOf(overlaid, "12423222931"));
+    }
+
+    @Test
+    void testSuggest_openNode() {
+        PrefixSuggestion suggestion = index.suggest("7");
+        assertEquals("7", suggestion.matchedPrefix());
+        assertEquals("Russia", suggestion.country());
+        assertEquals(List.of("Kazakhstan", "Russia"), suggestion.possible());
+        assertFalse(suggestion.complete());
+        assertEquals("7*", suggestion.key());
+        assertEquals("{\"matchedPrefix\":\"7\",\"country\":\"Russia\",\"possible\":[\"Kazakhstan\",\"Russia\"],"
+                + "\"complete\":false}", new String(suggestion.json(), StandardCharsets.UTF_8));
+
+        // Nothing matches yet, but only codes below the node are possible
+        PrefixSuggestion fifty = index.suggest("59");
+        assertNull(fifty.matchedPrefix());
+        assertEquals(List.of("Caribbean Netherlands", "Curaçao"), fifty.possible());
+
+        assertEquals(List.of("Bahamas", "Canada", "Caribbean Netherlands", "Curaçao", "Kazakhstan", "Russia",
+                "United States"), index.suggest("").possible());
+    }
+
+    @Test
+    void testSuggest_leftTrie() {
+        // Past the last code on the path only the match can apply, however many digits follow
+        PrefixSuggestion russia = index.suggest("7495");
+        assertSame(russia, index.suggest("749512345"));
+        assertSame(russia, index.suggest("78"));
+        assertEquals("7", russia.matchedPrefix());
+        assertEquals(List.of("Russia"), russia.possible());
+        assertTrue(russia.complete());
+        assertEquals("7", russia.key());
+
+        // A code without longer codes below it is complete as soon as it is reached
+        assertSame(index.suggest("77"), index.suggest("7712"));
+        assertTrue(index.suggest("1242").complete());
+
+        PrefixSuggestion none = index.suggest("99");
+        assertNull(none.matchedPrefix());
+        assertTrue(none.possible().isEmpty());
+        assertTrue(none.complete());
+        assertEquals("", none.key());
+        assertTrue(CountryCodeIndex.EMPTY.suggest("").complete());
+    }
+
+    @Test
+    void testSuggest_sharedPerNode() {
+        assertSame(index.suggest("12"), index.suggest("12"));
+        assertSame(index.suggest("12"), index.withVersion(42).suggest("12"));
+        assertNotSame(index.suggest("1"), index.suggest("12"));
+    }
+
+    @Test
+    void testEstimatedBytes_growsWithCodes() {
+        CountryCodeIndex.Builder builder = CountryCodeIndex.builder(1000).addAll(index);
+        for (int areaCode = 200; areaCode < 1000; areaCode++) {
+            builder.add("1" + areaCode, List.of("United States"));
+        }
+        CountryCodeIndex larger = builder.build();
+        assertTrue(CountryCodeIndex.EMPTY.estimatedBytes() > 0);
+        assertTrue(index.estimatedBytes() > CountryCodeIndex.EMPTY.estimatedBytes());
+        assertTrue(larger.estimatedBytes() > index.estimatedBytes());
+        assertTrue(larger.nodeCount() > index.nodeCount());
+        assertEquals(larger.estimatedBytes(), larger.withVersion(42).estimatedBytes());
+    }
+
+    // The lookup path of the service: validated, packed, matched
+    static String countryOf(CountryCodeIndex index, String number) {
+        int match = matchOf(index, number);
+        return match == CountryCodeIndex.NO_MATCH ? null : index.entry(match).country();
+    }
+
+    static String prefixOf(CountryCodeIndex index, String number) {
+        int match = matchOf(index, number);
+        return match == CountryCodeIndex.NO_MATCH ? null : index.prefix(match);
+    }
+
+    private static int matchOf(CountryCodeIndex index, String number) {
+        long packed = PhoneNumberNormalizer.pack(number);
+        return PhoneNumberNormalizer.isValid(packed) ? index.match(packed) : CountryCodeIndex.NO_MATCH;
+    }
+}
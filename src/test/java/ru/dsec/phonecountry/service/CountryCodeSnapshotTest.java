@@ -0,0 +1,71 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.dsec.phonecountry.service.CountryCodeIndexTest.countryOf;
+
+class CountryCodeSnapshotTest {
+
+    private static final Map<String, List<String>> CODES = Map.of(
+            "+1", List.of("Canada", "United States"),
+            "+1242", List.of("Bahamas"),
+            "+7", List.of("Russia"),
+            "+76", List.of("Kazakhstan"),
+            "+5999", List.of("Curaçao"));
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void testWriteAndRead_roundTrip() throws IOException {
+        Path file = tempDir.resolve("codes.snapshot");
+        CountryCodeSnapshot.write(CODES, file);
+
+        CountryCodeIndex index = CountryCodeSnapshot.read(file);
+        assertEquals(5, index.size());
+        assertEquals("Canada, United States", countryOf(index, "11165384765"));
+        assertEquals("Bahamas", countryOf(index, "12423222931"));
+        assertEquals("Kazakhstan", countryOf(index, "76112227231"));
+        assertEquals("Curaçao", countryOf(index, "59991234567"));
+
+        CountryCodeIndex fromStream = CountryCodeSnapshot.read(new ByteArrayInputStream(Files.readAllBytes(file)));
+        assertEquals("Russia", countryOf(fromStream, "71423423412"));
+    }
+
+    @Test
+    void testRead_corruptedSnapshot() throws IOException {
+        Path file = tempDir.resolve("codes.snapshot");
+        CountryCodeSnapshot.write(CODES, file);
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length / 2] ^= 0x1;
+        Files.write(file, bytes);
+
+        IOException e = assertThrows(IOException.class, () -> CountryCodeSnapshot.read(file));
+        assertEquals("Snapshot checksum mismatch", e.getMessage());
+    }
+
+    @Test
+    void testWrite_entryTooLarge() {
+        Path file = tempDir.resolve("codes.snapshot");
+        List<String> countries = IntStream.range(0, 256).mapToObj(i -> "Country " + i).toList();
+
+        assertThrows(IOException.class, () -> CountryCodeSnapshot.write(Map.of("+7", countries), file));
+        assertThrows(IOException.class, () -> CountryCodeSnapshot.write(Map.of("+7", List.of("x".repeat(65536))), file));
+        assertFalse(Files.exists(file));
+    }
+
+    @Test
+    void testRead_truncatedSnapshot() {
+        assertThrows(IOException.class, () -> CountryCodeSnapshot.read(new ByteArrayInputStream(new byte[]{1, 2, 3})));
+    }
+}
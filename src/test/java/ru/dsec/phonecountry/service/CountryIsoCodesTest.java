@@ -0,0 +1,54 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CountryIsoCodesTest {
+
+    @Test
+    void testAlpha2_jdkNames() {
+        assertEquals("RU", CountryIsoCodes.alpha2("Russia"));
+        assertEquals("US", CountryIsoCodes.alpha2("United States"));
+        assertEquals("CW", CountryIsoCodes.alpha2("Curaçao"));
+        assertEquals("BQ", CountryIsoCodes.alpha2("Caribbean Netherlands"));
+    }
+
+    @Test
+    void testAlpha2_wikipediaSpellings() {
+        assertEquals("TT", CountryIsoCodes.alpha2("Trinidad and Tobago"));
+        assertEquals("LC", CountryIsoCodes.alpha2("Saint Lucia"));
+        assertEquals("ST", CountryIsoCodes.alpha2("São Tomé and Príncipe"));
+        assertEquals("MM", CountryIsoCodes.alpha2("Myanmar"));
+        assertEquals("CI", CountryIsoCodes.alpha2("Ivory Coast"));
+        assertEquals("CD", CountryIsoCodes.alpha2("Democratic Republic of the Congo"));
+    }
+
+    @Test
+    void testAlpha2_noCode() {
+        assertNull(CountryIsoCodes.alpha2("Abkhazia"));
+        assertNull(CountryIsoCodes.alpha2("Atlantis"));
+    }
+
+    @Test
+    void testAlpha2_fixturePage() throws IOException {
+        Map<String, List<String>> codeToCountries;
+        try (InputStream page = getClass().getResourceAsStream("/wikipedia/List_of_telephone_country_codes.html")) {
+            codeToCountries = WikipediaCountryCodeParser.parse(page.readAllBytes());
+        }
+        Set<String> unresolved = new TreeSet<>();
+        codeToCountries.values().forEach(countries -> countries.stream()
+                .filter(country -> CountryIsoCodes.alpha2(country) == null)
+                .forEach(unresolved::add));
+
+        // Partially recognised or without an ISO 3166-1 code of their own
+        assertEquals(Set.of("Abkhazia", "Ascension Island", "Kosovo", "South Ossetia", "Tristan da Cunha"), unresolved);
+    }
+}
@@ -0,0 +1,85 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LookupEventLogTest {
+
+    @Test
+    void testDrainSummary_countsAndResets() {
+        LookupEventLog events = new LookupEventLog(new PhoneCountryConfig());
+        events.found("+71234567890", "Russia");
+        events.found("+12025550123", "Canada, United States");
+        events.notFound("+9991234567");
+        events.invalid("abc");
+
+        LookupEventLog.Summary summary = events.drainSummary();
+        assertEquals(2, summary.found());
+        assertEquals(1, summary.notFound());
+        assertEquals(1, summary.invalid());
+        assertEquals(0, summary.auditDropped());
+        assertEquals(List.of("not_found:+999*******", "invalid:abc"), summary.samples());
+
+        LookupEventLog.Summary next = events.drainSummary();
+        assertEquals(0, next.found() + next.notFound() + next.invalid());
+        assertTrue(next.samples().isEmpty());
+    }
+
+    @Test
+    void testDrainSummary_samplesAreCapped() {
+        PhoneCountryConfig config = new PhoneCountryConfig();
+        config.setLogSampleSize(2);
+        LookupEventLog events = new LookupEventLog(config);
+        for (int i = 0; i < 5; i++) {
+            events.notFound("+999000000" + i);
+        }
+
+        LookupEventLog.Summary summary = events.drainSummary();
+        assertEquals(5, summary.notFound());
+        assertEquals(List.of("not_found:+999*******", "not_found:+999*******"), summary.samples());
+    }
+
+    @Test
+    void testSampleOf_maskedUnlessAuditEnabled() {
+        assertEquals("+999*******", LookupEventLog.sampleOf("+9991234567", false));
+        assertEquals("+9991234567", LookupEventLog.sampleOf("+9991234567", true));
+        assertEquals("ab", LookupEventLog.sampleOf("ab", false));
+        assertEquals("null", LookupEventLog.sampleOf(null, false));
+        // Client input cannot forge log lines or flood the summary
+        assertEquals("+7??****", LookupEventLog.sampleOf("+7\r\nINFO", false));
+        assertEquals("+7??INFO fake", LookupEventLog.sampleOf("+7\r\nINFO fake", true));
+        assertEquals("*".repeat(28), LookupEventLog.sampleOf("x".repeat(1000), false).substring(4));
+        assertEquals("x".repeat(32) + "...", LookupEventLog.sampleOf("x".repeat(1000), true));
+    }
+
+    @Test
+    void testDrainSummary_rawSamplesWithAuditEnabled() {
+        PhoneCountryConfig config = new PhoneCountryConfig();
+        config.setAuditEnabled(true);
+        LookupEventLog events = new LookupEventLog(config);
+        try {
+            events.notFound("+9991234567");
+            assertEquals(List.of("not_found:+9991234567"), events.drainSummary().samples());
+        } finally {
+            events.close();
+        }
+    }
+
+    @Test
+    void testAudit_enabled() {
+        PhoneCountryConfig config = new PhoneCountryConfig();
+        config.setAuditEnabled(true);
+        config.setAuditBufferSize(4);
+        LookupEventLog events = new LookupEventLog(config);
+        try {
+            events.found("+71234567890", "Russia");
+            assertEquals(1, events.drainSummary().found());
+        } finally {
+            events.close();
+        }
+    }
+}
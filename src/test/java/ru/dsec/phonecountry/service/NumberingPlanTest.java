@@ -0,0 +1,69 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static ru.dsec.phonecountry.service.CountryCodeIndexTest.countryOf;
+
+class NumberingPlanTest {
+
+    @Test
+    void testRead_skipsCommentsAndBlankLines() throws IOException {
+        Map<String, List<String>> plan = read("# area codes\n\n+1416\tCanada\n+1212\tUnited States\n");
+        assertEquals(Map.of("+1416", List.of("Canada"), "+1212", List.of("United States")), plan);
+    }
+
+    @Test
+    void testRead_malformedLine() {
+        IOException e = assertThrows(IOException.class, () -> read("+1416\tCanada\n1212 United States\n"));
+        assertTrue(e.getMessage().contains("line 2"));
+        assertThrows(IOException.class, () -> read("+14a6\tCanada\n"));
+        assertThrows(IOException.class, () -> read("+1416\t\n"));
+    }
+
+    @Test
+    void testOverlay_longestPrefixWins() throws IOException {
+        CountryCodeIndex base = CountryCodeIndex.build(Map.of(
+                "1", "Canada, United States",
+                "1242", "Bahamas",
+                "7", "Russia, Kazakhstan",
+                "77", "Kazakhstan"));
+        CountryCodeIndex overlaid = NumberingPlan.overlay(base, read("+1416\tCanada\n+7\tRussia\n"));
+
+        assertEquals(5, overlaid.size());
+        assertEquals("Canada", countryOf(overlaid, "14165550100"));
+        assertEquals("Canada, United States", countryOf(overlaid, "18005550100"));
+        assertEquals("Bahamas", countryOf(overlaid, "12423222931"));
+        assertEquals("Russia", countryOf(overlaid, "74951234567"));
+        assertEquals("Kazakhstan", countryOf(overlaid, "77112227231"));
+        assertSame(base, NumberingPlan.overlay(base, Map.of()));
+    }
+
+    @Test
+    void testBundledPlan() throws IOException {
+        Map<String, List<String>> plan;
+        try (InputStream in = NumberingPlanTest.class.getResourceAsStream("/numbering-plan.tsv")) {
+            plan = NumberingPlan.read(in);
+        }
+        assertEquals(List.of("Canada"), plan.get("+1416"));
+        assertEquals(List.of("United States"), plan.get("+1212"));
+        assertEquals(List.of("Kazakhstan"), plan.get("+77"));
+        // Russia has the rest of +7, as in the code table
+        assertNull(plan.get("+79"));
+        // Caribbean members have their own country codes and are not repeated here
+        assertNull(plan.get("+1242"));
+        plan.values().stream().flatMap(List::stream)
+                .forEach(country -> assertNotNull(CountryIsoCodes.alpha2(country), country));
+    }
+
+    private static Map<String, List<String>> read(String plan) throws IOException {
+        return NumberingPlan.read(new ByteArrayInputStream(plan.getBytes(StandardCharsets.UTF_8)));
+    }
+}
@@ -0,0 +1,77 @@
+package ru.dsec.phonecountry.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Connection;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.dsec.phonecountry.config.PhoneCountryConfig;
+import ru.dsec.phonecountry.repository.CountryCodeStore;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Two instances of the service on one database, as two replicas started together.
+ */
+@JdbcTest
+@Import(CountryCodeStore.class)
+class PhoneCountryServiceSharedDatabaseTest {
+
+    private static final String PAGE_URL = "https://en.wikipedia.org/wiki/List_of_telephone_country_codes";
+    private static final String KAZAKHSTAN_PAGE =
+            "<h2><span id=\"Alphabetical_order\">Alphabetical order</span></h2>"
+                    + "<table class=\"wikitable\"><tbody>"
+                    + "<tr><td>Russia</td><td>+7</td></tr>"
+                    + "<tr><td>Kazakhstan</td><td>+7 (6, 7)</td></tr>"
+                    + "</tbody></table>";
+
+    @Autowired
+    private CountryCodeStore store;
+
+    @Test
+    void testLoadCountryCodes_onlyOneInstanceFetches() throws IOException {
+        PhoneCountryService first = service();
+        PhoneCountryService second = service();
+
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            Connection connection = mock(Connection.class);
+            when(connection.timeout(10000)).thenReturn(connection);
+            when(connection.ignoreHttpErrors(true)).thenReturn(connection);
+            Connection.Response response = mock(Connection.Response.class);
+            when(response.statusCode()).thenReturn(200);
+            when(response.bodyAsBytes()).thenReturn(KAZAKHSTAN_PAGE.getBytes(StandardCharsets.UTF_8));
+            // The second instance starts its refresh while the first one is downloading the page
+            when(connection.execute()).thenAnswer(invocation -> {
+                second.loadCountryCodes();
+                return response;
+            });
+            mockedJsoup.when(() -> Jsoup.connect(PAGE_URL)).thenReturn(connection);
+
+            first.loadCountryCodes();
+            // Once the first one is done, the second finds the codes fresh
+            second.loadCountryCodes();
+
+            mockedJsoup.verify(() -> Jsoup.connect(PAGE_URL), times(1));
+        }
+
+        assertEquals("updated", first.refreshStatus().lastOutcome());
+        assertEquals("skipped", second.refreshStatus().lastOutcome());
+        second.syncFromDatabase();
+        assertEquals("Kazakhstan", second.determineCountry("77112227231"));
+    }
+
+    private PhoneCountryService service() {
+        PhoneCountryConfig config = new PhoneCountryConfig();
+        config.setApiUrl(PAGE_URL);
+        config.setTimeout(10000);
+        return new PhoneCountryService(store, config, null,
+                new PhoneCountryMetrics(new SimpleMeterRegistry(), new PhoneCountryConfig()),
+                new LookupEventLog(new PhoneCountryConfig()));
+    }
+}
@@ -1,38 +1,65 @@
 package ru.dsec.phonecountry.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.jsoup.Connection;
 import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessResourceFailureException;
 import ru.dsec.phonecountry.config.PhoneCountryConfig;
 import ru.dsec.phonecountry.exception.CountryNotFoundException;
 import ru.dsec.phonecountry.exception.InvalidPhoneNumberException;
-import ru.dsec.phonecountry.repository.CountryCodeRepository;
+import ru.dsec.phonecountry.repository.CountryCodeStore;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static ru.dsec.phonecountry.service.CountryCodeIndexTest.countryOf;
+import static ru.dsec.phonecountry.service.CountryCodeIndexTest.prefixOf;
 
 @ExtendWith(MockitoExtension.class)
 class PhoneCountryServiceTest {
 
     @Mock
-    private CountryCodeRepository repository;
+    private CountryCodeStore store;
 
     @Mock
     private PhoneCountryConfig config;
 
-    @InjectMocks
+    private SimpleMeterRegistry meterRegistry;
+
     private PhoneCountryService service;
 
     @BeforeEach
     void setUp() {
-        service.countryCodeMap.clear(); // Очищаем map перед каждым тестом
+        meterRegistry = new SimpleMeterRegistry();
+        service = new PhoneCountryService(store, config, null,
+                new PhoneCountryMetrics(meterRegistry, new PhoneCountryConfig()),
+                new LookupEventLog(new PhoneCountryConfig()));
+        // The only instance: always claims the refresh and keeps it
+        lenient().when(config.getRefreshLease()).thenReturn(Duration.ofMinutes(5));
+        lenient().when(store.claimRefresh(any(), any(), any())).thenReturn(true);
+        lenient().when(store.whileRefreshOwner(any(), any(), any()))
+                .thenAnswer(invocation -> Optional.of(invocation.<Supplier<?>>getArgument(2).get()));
     }
 
     @Test
@@ -71,9 +98,10 @@ class PhoneCountryServiceTest {
 
     @Test
     void testDetermineCountry_russia() {
-        service.countryCodeMap.put("7", "Russia");
-        service.countryCodeMap.put("76", "Kazakhstan");
-        service.countryCodeMap.put("77", "Kazakhstan");
+        service.publishIndex(CountryCodeIndex.build(Map.of(
+                "7", "Russia",
+                "76", "Kazakhstan",
+                "77", "Kazakhstan")));
 
         String phoneNumber = "71423423412";
         String result = service.determineCountry(phoneNumber);
@@ -82,9 +110,10 @@ class PhoneCountryServiceTest {
 
     @Test
     void testDetermineCountry_kazakhstan() {
-        service.countryCodeMap.put("7", "Russia");
-        service.countryCodeMap.put("76", "Kazakhstan");
-        service.countryCodeMap.put("77", "Kazakhstan");
+        service.publishIndex(CountryCodeIndex.build(Map.of(
+                "7", "Russia",
+                "76", "Kazakhstan",
+                "77", "Kazakhstan")));
 
         String phoneNumber = "77112227231";
         String result = service.determineCountry(phoneNumber);
@@ -93,8 +122,9 @@ class PhoneCountryServiceTest {
 
     @Test
     void testDetermineCountry_unitedStatesAndCanada() {
-        service.countryCodeMap.put("1", "United States, Canada");
-        service.countryCodeMap.put("1242", "Bahamas");
+        service.publishIndex(CountryCodeIndex.build(Map.of(
+                "1", "United States, Canada",
+                "1242", "Bahamas")));
 
         String phoneNumber = "11165384765";
         String result = service.determineCountry(phoneNumber);
@@ -103,9 +133,10 @@ class PhoneCountryServiceTest {
 
     @Test
     void testDetermineCountry_caribbeanNetherlands() {
-        service.countryCodeMap.put("5993", "Caribbean Netherlands");
-        service.countryCodeMap.put("5994", "Caribbean Netherlands");
-        service.countryCodeMap.put("5997", "Caribbean Netherlands");
+        service.publishIndex(CountryCodeIndex.build(Map.of(
+                "5993", "Caribbean Netherlands",
+                "5994", "Caribbean Netherlands",
+                "5997", "Caribbean Netherlands")));
 
         String phoneNumber = "59971234567";
         String result = service.determineCountry(phoneNumber);
@@ -121,64 +152,473 @@ class PhoneCountryServiceTest {
 
     @Test
     void testDetermineCountry_countryNotFound() {
-        service.countryCodeMap.put("7", "Russia");
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
 
         String phoneNumber = "9991234567";
         assertThrows(CountryNotFoundException.class, () -> service.determineCountry(phoneNumber),
                 "Expected CountryNotFoundException for unknown code");
     }
 
+    @Test
+    void testLookup_results() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan")));
+        long version = service.index().version();
+
+        LookupResult.Found found = (LookupResult.Found) service.lookup("+7 (711) 222-72-31");
+        assertEquals("77", found.prefix());
+        assertEquals("Kazakhstan", found.country());
+        assertEquals(List.of("KZ"), found.entry().iso2());
+        assertEquals(version, found.version());
+        assertEquals(new LookupResult.Invalid("Phone number contains invalid characters"), service.lookup("abc"));
+        LookupResult notFound = service.lookup("9991234567");
+        assertEquals(new LookupResult.NotFound("9991234567", version), notFound);
+        assertEquals("Country not found for phone number: 9991234567", ((LookupResult.NotFound) notFound).message());
+    }
+
+    @Test
+    void testTypeahead() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan")));
+        long version = service.index().version();
+
+        TypeaheadResult.Suggested suggested = (TypeaheadResult.Suggested) service.typeahead("+7 (7");
+        assertSame(service.index().suggest("77"), suggested.suggestion());
+        assertEquals(version, suggested.version());
+        assertEquals(new TypeaheadResult.Invalid("Phone number contains invalid characters"), service.typeahead("7a"));
+        assertEquals(new TypeaheadResult.Invalid("Phone number length must be between 7 and 15 digits"),
+                service.typeahead("1234567890123456"));
+    }
+
+    @Test
+    void testPublishIndex_versionIncreases() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+        long first = service.index().version();
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+        long second = service.index().version();
+
+        assertTrue(first > 0);
+        assertTrue(second > first);
+    }
+
+    @Test
+    void testDetermineCountry_recordsMetrics() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan")));
+
+        service.determineCountry("71423423412");
+        service.determineCountry("77112227231");
+        service.determineCountry("77112227232");
+        assertThrows(CountryNotFoundException.class, () -> service.determineCountry("9991234567"));
+        assertThrows(InvalidPhoneNumberException.class, () -> service.determineCountry("abc"));
+
+        assertEquals(3, meterRegistry.get("phone.lookup").tag("outcome", "found").timer().count());
+        assertEquals(1, meterRegistry.get("phone.lookup").tag("outcome", "not_found").timer().count());
+        assertEquals(1, meterRegistry.get("phone.lookup").tag("outcome", "invalid").timer().count());
+        assertEquals(2.0, meterRegistry.get("phone.lookup.prefix").tag("prefix", "+77").counter().count());
+        assertEquals(2.0, meterRegistry.get("phone.index.size").gauge().value());
+    }
+
     @Test
     void testLoadCountryCodes_noWikipediaAccess() throws IOException {
         when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
         when(config.getTimeout()).thenReturn(10000);
 
         try (var mockedJsoup = mockStatic(Jsoup.class)) {
-            // Мокаем вызов Jsoup.connect() с конкретными параметрами
+            // Мокаем вызов execute() на Connection, чтобы выбросить IOException
+            Connection connection = mockConnection();
+            when(connection.execute()).thenThrow(new IOException("Network error"));
             mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
-                    .thenReturn(mock(org.jsoup.Connection.class));
+                    .thenReturn(connection);
+
+            service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+            service.loadCountryCodes();
 
-            // Мокаем вызов get() на Connection, чтобы выбросить IOException
-            org.jsoup.Connection connection = mock(org.jsoup.Connection.class);
-            when(connection.timeout(10000)).thenReturn(connection);
-            when(connection.get()).thenThrow(new IOException("Network error"));
+            verify(store, never()).replaceAll(any());
+            assertEquals("Russia", service.determineCountry("71423423412"));
+            assertFalse(service.refreshStatus().running());
+            assertEquals("failed", service.refreshStatus().lastOutcome());
+            assertNotNull(service.refreshStatus().lastFinished());
+            assertNull(service.refreshStatus().lastUpdated());
+        }
+    }
+
+    @Test
+    void testLoadCountryCodes_emptyTable() throws IOException {
+        when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
+        when(config.getTimeout()).thenReturn(10000);
+
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            // Страница без таблицы кодов
+            Connection connection = mockConnection();
+            Connection.Response response = mockResponse("<html></html>");
+            when(connection.execute()).thenReturn(response);
             mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
                     .thenReturn(connection);
 
             service.loadCountryCodes();
 
-            verify(repository, times(1)).deleteAll();
-            verify(repository, never()).saveAll(anyList());
-            assertTrue(service.countryCodeMap.isEmpty());
+            verify(store, never()).replaceAll(any());
+            assertEquals(0, service.index().size());
         }
     }
 
     @Test
-    void testLoadCountryCodes_emptyTable() throws IOException {
+    void testLoadCountryCodes_unchangedPageIsSkipped() throws IOException {
         when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
         when(config.getTimeout()).thenReturn(10000);
 
-        // Мокаем Document и его методы для симуляции пустой таблицы
-        Document mockDoc = mock(Document.class);
-        when(mockDoc.getElementById("Alphabetical_order")).thenReturn(null);
+        String page = "<h2><span id=\"Alphabetical_order\">Alphabetical order</span></h2>"
+                + "<table class=\"wikitable\"><tbody>"
+                + "<tr><td>Russia</td><td>+7</td></tr>"
+                + "<tr><td>Kazakhstan</td><td>+7 (6, 7)</td></tr>"
+                + "</tbody></table>";
 
         try (var mockedJsoup = mockStatic(Jsoup.class)) {
-            // Мокаем вызов Jsoup.connect() с конкретными параметрами
+            Connection connection = mockConnection();
+            Connection.Response response = mockResponse(page);
+            when(response.header("ETag")).thenReturn("\"v1\"");
+            when(response.header("Last-Modified")).thenReturn(null);
+            when(connection.execute()).thenReturn(response);
             mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
-                    .thenReturn(mock(org.jsoup.Connection.class));
+                    .thenReturn(connection);
+
+            service.loadCountryCodes();
+            service.loadCountryCodes(); // Та же страница: разбор и запись в БД пропускаются
+
+            verify(connection, times(1)).header("If-None-Match", "\"v1\"");
+            assertEquals(1, meterRegistry.get("phone.refresh.phase").tag("phase", "parse").timer().count());
+            verify(store, times(1)).replaceAll(Map.of("+7", "Russia", "+76", "Kazakhstan", "+77", "Kazakhstan"));
+            assertEquals("Kazakhstan", service.determineCountry("77112227231"));
+            assertEquals("unchanged", service.refreshStatus().lastOutcome());
+            assertNotNull(service.refreshStatus().lastUpdated());
+        }
+    }
 
-            // Мокаем вызов get() на Connection, чтобы вернуть mockDoc
-            org.jsoup.Connection connection = mock(org.jsoup.Connection.class);
-            when(connection.timeout(10000)).thenReturn(connection);
-            when(connection.get()).thenReturn(mockDoc);
+    @Test
+    void testLoadCountryCodes_anotherInstanceRefreshing() {
+        when(store.claimRefresh(any(), any(), any())).thenReturn(false);
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            service.loadCountryCodes();
+
+            // Only the instance holding the claim downloads the page
+            mockedJsoup.verifyNoInteractions();
+        }
+
+        verify(store, never()).replaceAll(any());
+        verify(store, never()).releaseRefresh(any());
+        assertEquals("skipped", service.refreshStatus().lastOutcome());
+    }
+
+    @Test
+    void testLoadCountryCodes_claimTakenOverWhileFetching() throws IOException {
+        when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
+        when(config.getTimeout()).thenReturn(10000);
+        doReturn(Optional.empty()).when(store).whileRefreshOwner(any(), any(), any());
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            Connection connection = mockConnection();
+            Connection.Response response = mockResponse(KAZAKHSTAN_PAGE);
+            when(connection.execute()).thenReturn(response);
             mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
                     .thenReturn(connection);
 
             service.loadCountryCodes();
+        }
 
-            verify(repository, times(1)).deleteAll();
-            verify(repository, never()).saveAll(anyList());
-            assertTrue(service.countryCodeMap.isEmpty());
+        // The other instance's codes arrive with the next sync
+        verify(store, never()).replaceAll(any());
+        assertEquals("Russia", service.determineCountry("77112227231"));
+        assertEquals("skipped", service.refreshStatus().lastOutcome());
+        assertEquals(1, meterRegistry.get("phone.refresh").tag("outcome", "skipped").timer().count());
+    }
+
+    @Test
+    void testLoadCountryCodes_databaseUnavailable() throws IOException {
+        when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
+        when(config.getTimeout()).thenReturn(10000);
+        doThrow(new DataAccessResourceFailureException("Connection refused")).when(store)
+                .whileRefreshOwner(any(), any(), any());
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            Connection connection = mockConnection();
+            Connection.Response response = mockResponse(KAZAKHSTAN_PAGE);
+            when(connection.execute()).thenReturn(response);
+            mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
+                    .thenReturn(connection);
+
+            service.loadCountryCodes();
         }
+
+        // No refresh without the lock: the index stays as the other instances have it
+        verify(store, never()).replaceAll(any());
+        assertEquals("Russia", service.determineCountry("77112227231"));
+        assertEquals("failed", service.refreshStatus().lastOutcome());
+    }
+
+    @Test
+    void testLoadCountryCodes_refreshedRecentlyByAnotherInstance() {
+        when(store.refreshedAt()).thenReturn(Instant.now().minus(Duration.ofHours(1)));
+        when(config.getRefreshInterval()).thenReturn(Duration.ofHours(24));
+
+        service.loadCountryCodes();
+
+        verify(store, never()).replaceAll(any());
+        verify(store, never()).markRefreshed(any());
+        verify(store).releaseRefresh(any());
+        assertEquals("skipped", service.refreshStatus().lastOutcome());
+    }
+
+    @Test
+    void testSyncFromDatabase_reloadsChangedTable() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+        when(store.version()).thenReturn(3L);
+        when(store.readAll(any())).thenAnswer(invocation -> {
+            BiConsumer<String, String> action = invocation.getArgument(0);
+            action.accept("+7", "Russia");
+            action.accept("+77", "Kazakhstan");
+            return 2;
+        });
+
+        service.syncFromDatabase();
+        service.syncFromDatabase(); // Same version: nothing to reload
+
+        verify(store, times(1)).readAll(any());
+        assertEquals("Kazakhstan", service.determineCountry("77112227231"));
+    }
+
+    @Test
+    void testSyncFromDatabase_emptyTableNotReadAgain() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+        when(store.version()).thenReturn(3L);
+        when(store.readAll(any())).thenReturn(0);
+
+        service.syncFromDatabase();
+        service.syncFromDatabase(); // Same version: still empty, nothing to read
+
+        verify(store, times(1)).readAll(any());
+        assertEquals("Russia", service.determineCountry("77112227231"));
+    }
+
+    @Test
+    void testSyncFromDatabase_failedReadNotRepeated() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia")));
+        when(store.version()).thenReturn(3L);
+        when(store.readAll(any())).thenThrow(new DataAccessResourceFailureException("Connection refused"));
+
+        service.syncFromDatabase();
+        service.syncFromDatabase(); // Same version: retried only once the table changes
+
+        verify(store, times(1)).readAll(any());
+        assertEquals("Russia", service.determineCountry("77112227231"));
+    }
+
+    @Test
+    void testRequestRefresh_runsOnTaskExecutor() {
+        List<Runnable> submitted = new ArrayList<>();
+        PhoneCountryService withExecutor = new PhoneCountryService(store, config, submitted::add,
+                new PhoneCountryMetrics(new SimpleMeterRegistry(), new PhoneCountryConfig()),
+                new LookupEventLog(new PhoneCountryConfig()));
+
+        assertTrue(withExecutor.requestRefresh());
+        assertEquals(1, submitted.size());
+        assertEquals(RefreshStatus.NEVER, withExecutor.refreshStatus());
+
+        // Claimed at submission: neither another request nor a scheduled refresh starts before the task runs
+        assertFalse(withExecutor.requestRefresh());
+        withExecutor.loadCountryCodes();
+        assertEquals(1, submitted.size());
+        verifyNoInteractions(store);
+
+        when(config.getApiUrl()).thenReturn("https://en.wikipedia.org/wiki/List_of_telephone_country_codes");
+        when(config.getTimeout()).thenReturn(10000);
+        try (var mockedJsoup = mockStatic(Jsoup.class)) {
+            Connection connection = mockConnection();
+            when(connection.execute()).thenThrow(new IOException("Network error"));
+            mockedJsoup.when(() -> Jsoup.connect("https://en.wikipedia.org/wiki/List_of_telephone_country_codes"))
+                    .thenReturn(connection);
+
+            submitted.get(0).run();
+        }
+        assertEquals("failed", withExecutor.refreshStatus().lastOutcome());
+        assertTrue(withExecutor.requestRefresh());
+        assertEquals(2, submitted.size());
+    }
+
+    @Test
+    void testWarmUp_doesNotRecordLookups() {
+        service.publishIndex(CountryCodeIndex.build(Map.of("7", "Russia", "77", "Kazakhstan")));
+
+        long matches = service.warmUp(1000);
+
+        assertTrue(matches > 0 && matches < 1000);
+        assertEquals(0, meterRegistry.get("phone.lookup").timers().stream().mapToLong(t -> t.count()).sum());
+    }
+
+    private static final String KAZAKHSTAN_PAGE =
+            "<h2><span id=\"Alphabetical_order\">Alphabetical order</span></h2>"
+                    + "<table class=\"wikitable\"><tbody>"
+                    + "<tr><td>Russia</td><td>+7</td></tr>"
+                    + "<tr><td>Kazakhstan</td><td>+7 (6, 7)</td></tr>"
+                    + "</tbody></table>";
+
+    private static Connection mockConnection() {
+        Connection connection = mock(Connection.class);
+        when(connection.timeout(10000)).thenReturn(connection);
+        when(connection.ignoreHttpErrors(true)).thenReturn(connection);
+        return connection;
+    }
+
+    private static Connection.Response mockResponse(String body) {
+        Connection.Response response = mock(Connection.Response.class);
+        when(response.statusCode()).thenReturn(200);
+        when(response.bodyAsBytes()).thenReturn(body.getBytes(StandardCharsets.UTF_8));
+        return response;
+    }
+
+    @Test
+    void testLoadLocalCountryCodes_fromDatabase() {
+        when(store.readAll(any())).thenAnswer(invocation -> {
+            BiConsumer<String, String> action = invocation.getArgument(0);
+            action.accept("+7", "Russia");
+            return 1;
+        });
+
+        service.loadLocalCountryCodes();
+
+        assertEquals(1, service.index().size());
+        assertEquals("Russia", service.determineCountry("71423423412"));
+    }
+
+    @Test
+    void testLoadLocalCountryCodes_fromSnapshot() {
+        when(config.getSnapshot()).thenReturn(new ClassPathResource("country-codes.snapshot"));
+
+        service.loadLocalCountryCodes();
+
+        assertEquals("Bahamas", service.determineCountry("12423222931"));
+        assertEquals("Kazakhstan", service.determineCountry("77112227231"));
+        assertEquals("Caribbean Netherlands", service.determineCountry("59971234567"));
+    }
+
+    @Test
+    void testLoadLocalCountryCodes_offlineStartup() {
+        List<Runnable> submitted = new ArrayList<>();
+        PhoneCountryService offline = new PhoneCountryService(store, config, submitted::add,
+                new PhoneCountryMetrics(new SimpleMeterRegistry(), new PhoneCountryConfig()),
+                new LookupEventLog(new PhoneCountryConfig()));
+        when(config.isOfflineStartup()).thenReturn(true);
+        when(config.getSnapshot()).thenReturn(new ClassPathResource("country-codes.snapshot"));
+
+        offline.loadLocalCountryCodes();
+        offline.refreshInBackground();
+
+        assertEquals("Bahamas", offline.determineCountry("12423222931"));
+        verifyNoInteractions(store);
+        assertTrue(submitted.isEmpty());
+    }
+
+    @Test
+    void testLoadLocalCountryCodes_withNumberingPlan() {
+        when(config.getSnapshot()).thenReturn(new ClassPathResource("country-codes.snapshot"));
+        when(config.getNumberingPlan()).thenReturn(new ClassPathResource("numbering-plan.tsv"));
+
+        service.loadLocalCountryCodes();
+
+        assertEquals("Canada", service.determineCountry("+1 416 555 0100"));
+        assertEquals("United States", service.determineCountry("+1 212 555 0100"));
+        assertEquals("Canada, United States", service.determineCountry("+1 800 555 0100"));
+        assertEquals("Bahamas", service.determineCountry("12423222931"));
+        assertEquals("Kazakhstan", service.determineCountry("77112227231"));
+        assertEquals("Abkhazia", service.determineCountry("+7 940 123 4567"));
+
+        // Refreshed indexes keep the plan
+        service.publishIndex(CountryCodeIndex.build(Map.of("1", "Canada, United States")));
+        assertEquals("Canada", service.determineCountry("+1 416 555 0100"));
+
+        // Without country codes the plan alone would answer for a few ranges only
+        service.publishIndex(CountryCodeIndex.EMPTY);
+        assertEquals(0, service.index().size());
+    }
+
+    @Test
+    void testPublishIndex_concurrentReadersSeeWholeIndexes() throws InterruptedException {
+        String[] numbers = {"+7 495 123 4567", "+7 712 222 7231", "+1 212 555 0100", "+44 20 7946 0958"};
+        int generations = 500;
+        int readers = 4;
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong reads = new AtomicLong();
+        service.publishIndex(generation(0));
+
+        Thread writer = new Thread(() -> {
+            for (int g = 1; g <= generations; g++) {
+                service.publishIndex(generation(g));
+                Thread.yield();
+            }
+            done.set(true);
+        });
+        List<Thread> threads = new ArrayList<>(List.of(writer));
+        for (int r = 0; r < readers; r++) {
+            threads.add(new Thread(() -> {
+                long lastVersion = 0;
+                do {
+                    // Every generation has every code, so a lookup can never miss
+                    for (String number : numbers) {
+                        LookupResult result = service.lookup(number);
+                        if (!(result instanceof LookupResult.Found found)) {
+                            failures.add("No match for " + number + ": " + result);
+                            return;
+                        }
+                        if (found.version() < lastVersion) {
+                            failures.add("Version went back from " + lastVersion + " to " + found.version());
+                        }
+                        lastVersion = found.version();
+                    }
+                    // Everything read from one published index comes from the same generation
+                    CountryCodeIndex snapshot = service.index();
+                    String generation = generationOf(countryOf(snapshot, "74951234567"));
+                    boolean odd = Integer.parseInt(generation) % 2 == 1;
+                    for (String number : new String[]{"77122227231", "442079460958"}) {
+                        if (!generation.equals(generationOf(countryOf(snapshot, number)))) {
+                            failures.add("Mixed generations in one index: " + generation + ", "
+                                    + countryOf(snapshot, number));
+                        }
+                    }
+                    if (odd != "1212".equals(prefixOf(snapshot, "12125550100"))
+                            || snapshot.size() != (odd ? 5 : 4)) {
+                        failures.add("Codes of another generation in generation " + generation);
+                    }
+                    reads.incrementAndGet();
+                } while (!done.get() && failures.isEmpty());
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(30_000);
+        }
+
+        assertTrue(failures.isEmpty(), () -> String.join("\n", failures));
+        assertTrue(done.get());
+        assertTrue(reads.get() > 0);
+        assertEquals(String.valueOf(generations), generationOf(countryOf(service.index(), "74951234567")));
+    }
+
+    // Odd generations also have a deeper +1 212 code
+    private static CountryCodeIndex generation(int g) {
+        Map<String, String> codes = new HashMap<>(Map.of(
+                "7", "Russia " + g,
+                "77", "Kazakhstan " + g,
+                "1", "Canada, United States " + g,
+                "44", "United Kingdom " + g));
+        if (g % 2 == 1) {
+            codes.put("1212", "United States " + g);
+        }
+        return CountryCodeIndex.build(codes);
+    }
+
+    private static String generationOf(String country) {
+        return country.substring(country.lastIndexOf(' ') + 1);
     }
-}
\ No newline at end of file
+}
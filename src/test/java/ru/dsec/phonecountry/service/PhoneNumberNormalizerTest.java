@@ -0,0 +1,73 @@
+package ru.dsec.phonecountry.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PhoneNumberNormalizerTest {
+
+    @Test
+    void testPack_formattedNumber() {
+        long packed = PhoneNumberNormalizer.pack("+7 (123) 456-78-90");
+        assertTrue(PhoneNumberNormalizer.isValid(packed));
+        assertEquals(11, PhoneNumberNormalizer.length(packed));
+        assertEquals(7, PhoneNumberNormalizer.digitAt(packed, 0));
+        assertEquals("71234567890", PhoneNumberNormalizer.toString(packed, false));
+    }
+
+    @Test
+    void testPack_fifteenDigits() {
+        long packed = PhoneNumberNormalizer.pack("999999999999999");
+        assertTrue(PhoneNumberNormalizer.isValid(packed));
+        assertEquals("+999999999999999", PhoneNumberNormalizer.toString(packed, true));
+    }
+
+    @Test
+    void testPack_errors() {
+        assertEquals(PhoneNumberNormalizer.EMPTY, PhoneNumberNormalizer.pack(null));
+        assertEquals(PhoneNumberNormalizer.EMPTY, PhoneNumberNormalizer.pack(" \t"));
+        assertEquals(PhoneNumberNormalizer.INVALID_CHARACTERS, PhoneNumberNormalizer.pack("+"));
+        assertEquals(PhoneNumberNormalizer.INVALID_CHARACTERS, PhoneNumberNormalizer.pack("7+1234567890"));
+        assertEquals(PhoneNumberNormalizer.INVALID_CHARACTERS, PhoneNumberNormalizer.pack("++71234567890"));
+        assertEquals(PhoneNumberNormalizer.INVALID_CHARACTERS, PhoneNumberNormalizer.pack("1234567890123456x"));
+        assertEquals(PhoneNumberNormalizer.INVALID_LENGTH, PhoneNumberNormalizer.pack("+123"));
+        assertEquals(PhoneNumberNormalizer.INVALID_LENGTH, PhoneNumberNormalizer.pack("+1234567890123456"));
+    }
+
+    @Test
+    void testPack_bytesSameAsString() {
+        String[] numbers = {"+7 (123) 456-78-90", "999999999999999", "71234567890\r", "", " \t", "+",
+                "7+1234567890", "++71234567890", "1234567890123456x", "+123", "+1234567890123456", "+7 495 123 45 67",
+                "+7 495 123 45 6\u00e4"};
+        for (String number : numbers) {
+            byte[] bytes = ("#" + number + "\n").getBytes(StandardCharsets.ISO_8859_1);
+            // The number sits inside a larger buffer, as in a stream of lines
+            long packed = PhoneNumberNormalizer.pack(ByteBuffer.wrap(bytes), 1, bytes.length - 1);
+            assertEquals(PhoneNumberNormalizer.pack(number), packed, number);
+        }
+    }
+
+    @Test
+    void testPartialDigits() {
+        assertEquals("", PhoneNumberNormalizer.partialDigits(""));
+        assertEquals("", PhoneNumberNormalizer.partialDigits("+"));
+        assertEquals("", PhoneNumberNormalizer.partialDigits(null));
+        assertEquals("7495", PhoneNumberNormalizer.partialDigits("+7 (495"));
+        assertEquals("1234567890123456", PhoneNumberNormalizer.partialDigits("1234567890123456"));
+        assertNull(PhoneNumberNormalizer.partialDigits("7a"));
+        assertNull(PhoneNumberNormalizer.partialDigits("++7"));
+    }
+
+    @Test
+    void testErrorMessage() {
+        assertEquals("Phone number cannot be empty",
+                PhoneNumberNormalizer.errorMessage(PhoneNumberNormalizer.EMPTY));
+        assertEquals("Phone number contains invalid characters",
+                PhoneNumberNormalizer.errorMessage(PhoneNumberNormalizer.INVALID_CHARACTERS));
+        assertEquals("Phone number length must be between 7 and 15 digits",
+                PhoneNumberNormalizer.errorMessage(PhoneNumberNormalizer.INVALID_LENGTH));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.dsec.phonecountry.service;
+
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WikipediaCountryCodeParserTest {
+
+    private static final String SECTION = "<h2><span class=\"mw-headline\" id=\"Alphabetical_order\">Alphabetical order</span>"
+            + "<span class=\"mw-editsection\">[<a href=\"/w/index.php?action=edit&amp;section=2\">edit</a>]</span></h2>"
+            + "<p>Codes shared by several entries are listed with the distinguishing digits in parentheses.</p>";
+
+    @Test
+    void testParse_fixtureSameAsDom() throws IOException {
+        byte[] page;
+        try (InputStream in = getClass().getResourceAsStream("/wikipedia/List_of_telephone_country_codes.html")) {
+            page = in.readAllBytes();
+        }
+
+        Map<String, List<String>> streamed = WikipediaCountryCodeParser.parse(page);
+
+        assertEquals(WikipediaDomParser.parse(Jsoup.parse(new String(page, StandardCharsets.UTF_8))), streamed);
+        assertEquals(253, streamed.size());
+        assertEquals(List.of("Russia"), streamed.get("+7"));
+        assertEquals(List.of("Kazakhstan"), streamed.get("+77"));
+        assertEquals(List.of("Abkhazia"), streamed.get("+7840"));
+        assertEquals(List.of("Åland Islands"), streamed.get("+35818"));
+    }
+
+    @Test
+    void testParse_cellMarkup() {
+        String page = SECTION + "<table class=\"wikitable sortable\"><tbody>"
+                + "<tr><th>Country, territory or region</th><th>Code</th></tr>"
+                + "<tr><td><span class=\"flagicon\"><img alt=\"\" src=\"flag.svg\"></span>&#160;<a href=\"/wiki/A\">Antigua"
+                + " &amp;<!-- sic --> Barbuda</a></td><td><a href=\"/wiki/B\">+1</a> (268)<sup class=\"reference\">"
+                + "<a href=\"#cite\">[7]</a></sup></td></tr>"
+                + "<tr><td><p>Caribbean</p><p>Netherlands</p></td><td>+599 (3,&nbsp;4, 7)</td></tr>"
+                + "<tr><td>Somewhere<br>Else</td><td>880</td></tr>"
+                + "</tbody></table>";
+
+        Map<String, List<String>> streamed = WikipediaCountryCodeParser.parse(page.getBytes(StandardCharsets.UTF_8));
+
+        assertEquals(WikipediaDomParser.parse(Jsoup.parse(page)), streamed);
+        assertEquals(Map.of(
+                "+1268", List.of("Antigua & Barbuda"),
+                "+5993", List.of("Caribbean Netherlands"),
+                "+5994", List.of("Caribbean Netherlands"),
+                "+5997", List.of("Caribbean Netherlands"),
+                "+880", List.of("Somewhere Else")), streamed);
+    }
+
+    @Test
+    void testParse_stopsAfterTable() {
+        String page = SECTION + "<table class=\"wikitable\"><tr><td>Russia</td><td>+7</td></tr></table>"
+                + "<table class=\"wikitable\"><tr><td>Elsewhere</td><td>+999</td></tr></table>";
+
+        assertEquals(Map.of("+7", List.of("Russia")),
+                WikipediaCountryCodeParser.parse(page.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    void testParse_noTable() {
+        assertTrue(WikipediaCountryCodeParser.parse("<html></html>".getBytes(StandardCharsets.UTF_8)).isEmpty());
+        String otherTable = SECTION + "<table class=\"infobox\"><tr><td>Russia</td><td>+7</td></tr></table>";
+        assertTrue(WikipediaCountryCodeParser.parse(otherTable.getBytes(StandardCharsets.UTF_8)).isEmpty());
+    }
+}
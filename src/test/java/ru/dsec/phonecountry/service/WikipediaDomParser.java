@@ -0,0 +1,51 @@
+package ru.dsec.phonecountry.service;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the "Alphabetical order" table from a parsed Jsoup document, the way the service did before
+ * {@link WikipediaCountryCodeParser} scanned the raw page. Kept as the reference the scanner is checked
+ * and benchmarked against.
+ */
+public final class WikipediaDomParser {
+
+    private WikipediaDomParser() {
+    }
+
+    /**
+     * @param doc The fetched page.
+     * @return Codes with "+" (e.g. "+7", "+5997") mapped to countries in table order;
+     * empty if the table cannot be found.
+     */
+    public static Map<String, List<String>> parse(Document doc) {
+        Element alphabeticalOrderHeader = doc.getElementById("Alphabetical_order");
+        if (alphabeticalOrderHeader == null) {
+            return Map.of();
+        }
+
+        Element parent = alphabeticalOrderHeader.parent();
+        Element table = parent != null ? parent.nextElementSibling() : null;
+        while (table != null && !table.tagName().equals("table")) {
+            table = table.nextElementSibling();
+        }
+
+        if (table == null || !table.hasClass("wikitable")) {
+            return Map.of();
+        }
+
+        Map<String, List<String>> codeToCountries = new HashMap<>(250);
+        for (Element row : table.select("tbody > tr")) {
+            Elements cells = row.select("td");
+            if (cells.size() >= 2) {
+                WikipediaCountryCodeParser.addRow(codeToCountries, cells.get(0).text().trim(), cells.get(1).text().trim());
+            }
+        }
+        return codeToCountries;
+    }
+}